@@ -0,0 +1,68 @@
+package com.eysoftpro.filesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// Generated inventories and snapshots shared by the benchmarks. Files are written once per shape and
+// size into java.io.tmpdir/filesystem-bench (or -Dbench.dir) and reused by later runs.
+final class BenchmarkTrees {
+    private static final long SEED = 42;
+
+    private BenchmarkTrees() {
+    }
+
+    static Path manifest(TreeGenerator.Shape shape, long entries) throws IOException {
+        Path dir = Paths.get(System.getProperty("bench.dir", System.getProperty("java.io.tmpdir") + "/filesystem-bench"));
+        Files.createDirectories(dir);
+        Path file = dir.resolve(shape + "-" + entries + "-" + SEED + ".txt");
+        if (!Files.exists(file)) {
+            Path temp = dir.resolve(file.getFileName() + ".tmp");
+            TreeGenerator.write(shape, entries, temp, SEED);
+            Files.move(temp, file);
+        }
+        return file;
+    }
+
+    static Path snapshot(TreeGenerator.Shape shape, long entries) throws IOException {
+        Path manifest = manifest(shape, entries);
+        Path file = manifest.resolveSibling(manifest.getFileName().toString().replace(".txt", ".snapshot"));
+        if (!Files.exists(file)) {
+            load(shape, entries).saveSnapshot(file.toString());
+        }
+        return file;
+    }
+
+    static FileSystem load(TreeGenerator.Shape shape, long entries) throws IOException {
+        FileSystem fileSystem = new FileSystem();
+        fileSystem.loadFromFileSystem(manifest(shape, entries).toString());
+        return fileSystem;
+    }
+
+    // Paths of every directory in the form findDirectory accepts ("/a/b"), in tree order
+    static List<String> directoryPaths(FileSystem fileSystem) {
+        List<String> paths = new ArrayList<>();
+        String rootPath = fileSystem.getRoot().getFullPath();
+        fileSystem.walk((node, depth) -> {
+            if (node instanceof DirectoryNode && depth > 0) {
+                paths.add(node.getFullPath().substring(rootPath.length()));
+            }
+            return true;
+        });
+        return paths;
+    }
+
+    // Directories in which new files may be added, i.e. whose access level is USER
+    static List<String> writableDirectoryPaths(FileSystem fileSystem) {
+        List<String> paths = new ArrayList<>();
+        for (String path : directoryPaths(fileSystem)) {
+            if (fileSystem.findDirectory(path).getAccessLevel() == AccessLevel.USER) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,60 @@
+package com.eysoftpro.filesystem;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Startup cost: parsing the text manifest against loading the binary snapshot and the compact store
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LoadBenchmark {
+    @Param({"WIDE", "DEEP", "SKEWED"})
+    TreeGenerator.Shape shape;
+
+    @Param({"100000"})
+    long entries;
+
+    private Path manifest;
+    private Path snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        manifest = BenchmarkTrees.manifest(shape, entries);
+        snapshot = BenchmarkTrees.snapshot(shape, entries);
+    }
+
+    @Benchmark
+    public FileSystem loadFromFileSystem() throws IOException {
+        FileSystem fileSystem = new FileSystem();
+        fileSystem.loadFromFileSystem(manifest.toString());
+        return fileSystem;
+    }
+
+    @Benchmark
+    public FileSystem loadSnapshot() throws IOException {
+        FileSystem fileSystem = new FileSystem();
+        fileSystem.loadSnapshot(snapshot.toString());
+        return fileSystem;
+    }
+
+    @Benchmark
+    public CompactTree loadCompactTree() throws IOException {
+        return CompactTree.load(manifest.toString());
+    }
+}
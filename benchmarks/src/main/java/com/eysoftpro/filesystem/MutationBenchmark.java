@@ -0,0 +1,152 @@
+package com.eysoftpro.filesystem;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Write paths. Every operation adds a file to a random USER directory and removes it again, so the
+// tree keeps its size for the whole run; tearDown fails the run if it did not. The threaded variants
+// measure contention between writers in different subtrees and with concurrent readers. JMH takes
+// the thread count from @Threads, not from a @Param, so mixedReadWrite has one method per count.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class MutationBenchmark {
+    private static final int BATCH_SIZE = 1000;
+    private static final int LISTING_PAGE = 100;
+
+    @Param({"WIDE", "DEEP", "SKEWED"})
+    TreeGenerator.Shape shape;
+
+    @Param({"100000"})
+    long entries;
+
+    private FileSystem fileSystem;
+    private String[] writable;
+    private final AtomicInteger names = new AtomicInteger();
+    private final Date lastModified = new Date(1700000000000L);
+
+    private long size;
+    private long nodes;
+
+    @Setup
+    public void setUp() throws IOException {
+        fileSystem = BenchmarkTrees.load(shape, entries);
+        writable = BenchmarkTrees.writableDirectoryPaths(fileSystem).toArray(new String[0]);
+        size = fileSystem.getRoot().getSize();
+        nodes = fileSystem.getNodeCount();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (fileSystem.getRoot().getSize() != size || fileSystem.getNodeCount() != nodes
+                || !fileSystem.searchByExtension("tmp").isEmpty()) {
+            throw new IllegalStateException("Tree changed during the run: " + fileSystem.getNodeCount() + " nodes, "
+                    + fileSystem.getRoot().getSize() + " bytes; expected " + nodes + " nodes, " + size + " bytes");
+        }
+    }
+
+    private void addAndRemove() throws FileSystemException {
+        String path = writable[ThreadLocalRandom.current().nextInt(writable.length)];
+        String name = "bench" + names.incrementAndGet() + ".tmp";
+        fileSystem.addFile(path, name, "tmp", 1024, "USER", lastModified);
+        fileSystem.removeFile(path, name);
+    }
+
+    @Benchmark
+    public void addRemoveFile() throws FileSystemException {
+        addAndRemove();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addRemoveFileConcurrent() throws FileSystemException {
+        addAndRemove();
+    }
+
+    // Half the calls write, the other half read what the writers touch: the files in flight by name
+    // and extension, a page of a directory's listing and the SYSTEM-content check removal makes
+    private long mixedReadWrite() throws FileSystemException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextBoolean()) {
+            addAndRemove();
+            return 0;
+        }
+        String path = writable[random.nextInt(writable.length)];
+        return switch (random.nextInt(4)) {
+            case 0 -> fileSystem.searchByName("bench" + names.get() + ".tmp").size();
+            case 1 -> fileSystem.searchByExtension("tmp").size();
+            case 2 -> {
+                DirectoryListing listing = fileSystem.openListing(path, null);
+                long bytes = 0;
+                for (int i = 0; i < LISTING_PAGE && listing.hasNext(); i++) {
+                    bytes += listing.next().getSize();
+                }
+                yield bytes;
+            }
+            default -> fileSystem.findDirectory(path).getSystemDescendantCount();
+        };
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long mixedReadWrite1() throws FileSystemException {
+        return mixedReadWrite();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public long mixedReadWrite2() throws FileSystemException {
+        return mixedReadWrite();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long mixedReadWrite4() throws FileSystemException {
+        return mixedReadWrite();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long mixedReadWrite8() throws FileSystemException {
+        return mixedReadWrite();
+    }
+
+    // BATCH_SIZE files added to one directory in a batch and removed in a second one; compare with
+    // addRemoveFile per operation
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<FileSystemException> batchAddRemove() {
+        String path = writable[ThreadLocalRandom.current().nextInt(writable.length)];
+        int first = names.getAndAdd(BATCH_SIZE);
+        FileSystemBatch add = new FileSystemBatch();
+        FileSystemBatch remove = new FileSystemBatch();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            add.addFile(path, "bench" + (first + i) + ".tmp", "tmp", 1024, "USER", lastModified);
+            remove.removeFile(path, "bench" + (first + i) + ".tmp");
+        }
+        fileSystem.apply(add);
+        return fileSystem.apply(remove);
+    }
+}
@@ -0,0 +1,111 @@
+package com.eysoftpro.filesystem;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Read paths on a loaded tree. Lookups cycle through every directory of the tree, so the path cache
+// sees the tree's real working set rather than one hot entry.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class QueryBenchmark {
+    @Param({"WIDE", "DEEP", "SKEWED"})
+    TreeGenerator.Shape shape;
+
+    @Param({"100000"})
+    long entries;
+
+    private FileSystem fileSystem;
+    private String[] directories;
+    private DirectoryNode[] directoryNodes;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        fileSystem = BenchmarkTrees.load(shape, entries);
+        List<String> paths = BenchmarkTrees.directoryPaths(fileSystem);
+        directories = paths.toArray(new String[0]);
+        directoryNodes = new DirectoryNode[directories.length];
+        for (int i = 0; i < directories.length; i++) {
+            directoryNodes[i] = fileSystem.findDirectory(directories[i]);
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == directories.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public DirectoryNode findDirectory() {
+        return fileSystem.findDirectory(directories[nextIndex()]);
+    }
+
+    // f0.txt-style names exist in most directories, so this returns many nodes
+    @Benchmark
+    public List<TreeNode> searchByNameCommon() {
+        return fileSystem.searchByName("f0.txt");
+    }
+
+    @Benchmark
+    public List<TreeNode> searchByNameRare() {
+        return fileSystem.searchByName("f999.png");
+    }
+
+    @Benchmark
+    public List<FileNode> searchByExtensionRare() {
+        return fileSystem.searchByExtension("png");
+    }
+
+    @Benchmark
+    public List<FileNode> searchByExtensionCommon() {
+        return fileSystem.searchByExtension("txt");
+    }
+
+    @Benchmark
+    public List<TreeNode> searchByPrefix() {
+        return fileSystem.searchByPrefix("f12", 100);
+    }
+
+    @Benchmark
+    public List<FileNode> searchBySize() {
+        return fileSystem.searchBySize(1000, 1100, 100);
+    }
+
+    @Benchmark
+    public List<FileNode> largestFiles() {
+        return fileSystem.largestFiles(10);
+    }
+
+    @Benchmark
+    public List<DirectoryNode> largestDirectories() {
+        return fileSystem.largestDirectories(10);
+    }
+
+    @Benchmark
+    public long getSizeRoot() {
+        return fileSystem.getRoot().getSize();
+    }
+
+    @Benchmark
+    public long getSize() {
+        return directoryNodes[nextIndex()].getSize();
+    }
+}
@@ -0,0 +1,158 @@
+package com.eysoftpro.filesystem;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+// Writes synthetic inventories in the myfiles.txt format, for benchmarks and load tests. The output
+// is a function of shape, entry count and seed only, so benchmark runs can be compared.
+//
+//   WIDE    two levels: directories of FILES_PER_WIDE_DIR files each
+//   DEEP    chains of DEEP_CHAIN_LENGTH nested directories with a few files at every level
+//   SKEWED  directory sizes follow a Zipf distribution, so a few directories hold most of the
+//           files, and each top-level directory ends in a nested path of random depth
+//
+// File names repeat across directories (f0.txt exists in most of them), so name searches have
+// realistic hit counts. About one file in twenty is SYSTEM.
+public class TreeGenerator {
+    public enum Shape { WIDE, DEEP, SKEWED }
+
+    static final int FILES_PER_WIDE_DIR = 1000;
+    static final int DEEP_CHAIN_LENGTH = 256;
+    static final int DEEP_FILES_PER_LEVEL = 4;
+    static final int SKEWED_DIRECTORIES = 1000;
+
+    private static final String[] EXTENSIONS = {"txt", "log", "jpg", "mp4", "pdf", "exe", "java", "dat", "csv", "png"};
+    private static final int[] EXTENSION_WEIGHTS = {30, 20, 15, 5, 10, 3, 8, 4, 3, 2}; // out of 100
+    private static final long START_2015 = 1420070400000L;
+    private static final long TEN_YEARS = 10L * 365 * 24 * 3600 * 1000;
+
+    private final Writer out;
+    private final Random random;
+    private long written;
+
+    private TreeGenerator(Writer out, long seed) {
+        this.out = out;
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: TreeGenerator WIDE|DEEP|SKEWED <entries> <output file> [seed]");
+            System.exit(1);
+        }
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        long entries = write(Shape.valueOf(args[0]), Long.parseLong(args[1]), Paths.get(args[2]), seed);
+        System.out.println("Wrote " + entries + " entries to " + args[2]);
+    }
+
+    // Writes about `entries` entries below the root line and returns the exact number written
+    public static long write(Shape shape, long entries, Path target, long seed) throws IOException {
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(target, StandardCharsets.UTF_8), 1 << 16)) {
+            TreeGenerator generator = new TreeGenerator(writer, seed);
+            writer.write("\\root\r\n");
+            switch (shape) {
+                case WIDE -> generator.wide(entries);
+                case DEEP -> generator.deep(entries);
+                case SKEWED -> generator.skewed(entries);
+            }
+            return generator.written;
+        }
+    }
+
+    private void wide(long entries) throws IOException {
+        for (int d = 0; written < entries; d++) {
+            directory(1, "dir" + d);
+            files(2, Math.min(FILES_PER_WIDE_DIR, entries - written));
+        }
+    }
+
+    private void deep(long entries) throws IOException {
+        for (int chain = 0; written < entries; chain++) {
+            for (int level = 0; level < DEEP_CHAIN_LENGTH && written < entries; level++) {
+                directory(level + 1, level == 0 ? "chain" + chain : "level" + level);
+                files(level + 2, Math.min(DEEP_FILES_PER_LEVEL, entries - written));
+            }
+        }
+    }
+
+    private void skewed(long entries) throws IOException {
+        double[] weights = new double[SKEWED_DIRECTORIES];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = 1 / Math.pow(i + 1, 1.2);
+            total += weights[i];
+        }
+        long budget = entries - SKEWED_DIRECTORIES * 4L; // room for the directory lines
+        for (int i = 0; i < weights.length && written < entries; i++) {
+            long files = Math.max(1, (long) (budget * weights[i] / total));
+            directory(1, "group" + i);
+            long direct = files / 2;
+            files(2, Math.min(direct, entries - written));
+            int depth = random.nextInt(4);
+            for (int level = 0; level < depth && written < entries; level++) {
+                directory(level + 2, "sub" + level);
+            }
+            files(depth + 2, direct, Math.min(files - direct, entries - written));
+        }
+        for (int d = 0; written < entries; d++) {
+            directory(1, "rest" + d);
+            files(2, Math.min(FILES_PER_WIDE_DIR, entries - written));
+        }
+    }
+
+    private void directory(int depth, String name) throws IOException {
+        indent(depth);
+        out.write('\\');
+        out.write(name);
+        out.write("\r\n");
+        written++;
+    }
+
+    private void files(int depth, long count) throws IOException {
+        files(depth, 0, count);
+    }
+
+    // Names are f<first>, f<first + 1>, ... so two runs into one directory must not overlap
+    private void files(int depth, long first, long count) throws IOException {
+        for (long i = first; i < first + count; i++) {
+            indent(depth);
+            String extension = extension();
+            out.write('f');
+            out.write(Long.toString(i));
+            out.write('.');
+            out.write(extension);
+            long date = START_2015 + (long) (random.nextDouble() * TEN_YEARS);
+            LocalDate day = Instant.ofEpochMilli(date).atZone(ZoneOffset.UTC).toLocalDate();
+            out.write("##" + day.getDayOfMonth() + "." + day.getMonthValue() + "." + day.getYear());
+            out.write("##" + (long) Math.pow(10, 1 + random.nextDouble() * 7)); // 10 B to 100 MB, log-uniform
+            out.write(random.nextInt(20) == 0 ? "##SYSTEM\r\n" : "##USER\r\n");
+            written++;
+        }
+    }
+
+    private String extension() {
+        int r = random.nextInt(100);
+        for (int i = 0; i < EXTENSIONS.length; i++) {
+            r -= EXTENSION_WEIGHTS[i];
+            if (r < 0) {
+                return EXTENSIONS[i];
+            }
+        }
+        return EXTENSIONS[0];
+    }
+
+    private void indent(int depth) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            out.write('\t');
+        }
+    }
+}
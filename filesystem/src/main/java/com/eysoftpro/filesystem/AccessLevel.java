@@ -0,0 +1,19 @@
+package com.eysoftpro.filesystem;
+
+// Who may change a node. A non-empty directory is SYSTEM exactly when all of its children are.
+public enum AccessLevel {
+    USER,
+    SYSTEM;
+
+    // Accepts the names in any case, as typed in the menu or written in commands
+    public static AccessLevel parse(String accessLevel) throws FileSystemException {
+        if (accessLevel != null) {
+            for (AccessLevel level : values()) {
+                if (level.name().equalsIgnoreCase(accessLevel.trim())) {
+                    return level;
+                }
+            }
+        }
+        throw new FileSystemException("Invalid access level: " + accessLevel + " (expected USER or SYSTEM)");
+    }
+}
@@ -0,0 +1,7 @@
+package com.eysoftpro.filesystem;
+
+public class AccessViolationException extends FileSystemException {
+    public AccessViolationException(String message) {
+        super(message);
+    }
+}
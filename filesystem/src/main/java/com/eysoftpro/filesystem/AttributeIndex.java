@@ -0,0 +1,99 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.ToLongFunction;
+
+// Files ordered by one numeric attribute (size, modification time), for range and top-K queries.
+// Files with equal values share one set; the distinct values are kept sorted. A query seeks to its
+// first value in O(log n) and then only touches the files it returns. File attributes never change
+// after a file is added, so the index only follows adds and removes.
+public class AttributeIndex implements FileSystemListener {
+    // Keys are created and dropped inside byValue.compute, which serializes writers on the same key
+    private final ConcurrentHashMap<Long, Set<FileNode>> byValue = new ConcurrentHashMap<>();
+    private final NavigableSet<Long> sortedValues = new ConcurrentSkipListSet<>();
+    private final ToLongFunction<FileNode> attribute;
+
+    public AttributeIndex(ToLongFunction<FileNode> attribute) {
+        this.attribute = attribute;
+    }
+
+    @Override
+    public void nodeAdded(TreeNode node) {
+        TreeTraversal.forEach(node, n -> {
+            if (n instanceof FileNode) {
+                FileNode file = (FileNode) n;
+                byValue.compute(attribute.applyAsLong(file), (value, files) -> {
+                    if (files == null) {
+                        files = ConcurrentHashMap.newKeySet();
+                        sortedValues.add(value);
+                    }
+                    files.add(file);
+                    return files;
+                });
+            }
+        });
+    }
+
+    @Override
+    public void nodeRemoved(DirectoryNode parent, TreeNode node) {
+        TreeTraversal.forEach(node, n -> {
+            if (n instanceof FileNode) {
+                byValue.computeIfPresent(attribute.applyAsLong((FileNode) n), (value, files) -> {
+                    if (files.remove(n) && files.isEmpty()) {
+                        sortedValues.remove(value);
+                        return null;
+                    }
+                    return files;
+                });
+            }
+        });
+    }
+
+    // Files with from <= value <= to, in ascending order of value, or descending if asked; lazy
+    public Iterator<FileNode> range(long from, long to, boolean descending) {
+        if (from > to) {
+            return Collections.emptyIterator();
+        }
+        NavigableSet<Long> values = sortedValues.subSet(from, true, to, true);
+        return new Expander((descending ? values.descendingSet() : values).iterator());
+    }
+
+    // Files by value from the largest down, lazy; the first k are the top K
+    public Iterator<FileNode> descending() {
+        return new Expander(sortedValues.descendingIterator());
+    }
+
+    private class Expander implements Iterator<FileNode> {
+        private final Iterator<Long> values;
+        private Iterator<FileNode> current = Collections.emptyIterator();
+
+        Expander(Iterator<Long> values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && values.hasNext()) {
+                Set<FileNode> files = byValue.get(values.next());
+                if (files != null) {
+                    current = files.iterator();
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public FileNode next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.eysoftpro.filesystem;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Executes the line-based command language used by script mode and the command server. Each
+// command writes its result lines and then exactly one status line, "OK <count>" or "ERR <message>",
+// so a client can pipeline commands and match the replies up. Arguments are separated by blanks;
+// an argument containing blanks is written in double quotes. Lines starting with # are comments.
+//
+//   mkdir <path> <name> [access]                        ls <path> [limit [token]]
+//   add <path> <name> <ext> <size> [access] [millis]    tree
+//   rmdir <path> <name>                                 find <name>
+//   rmtree <path> <name>                                ext <extension>
+//   rm <path> <name>                                    size <path>
+//   prefix|contains|glob <text> [limit]                 largest <k>
+//   sizes <min> <max> [limit]                           newest <k>
+//   modified <from-millis> <to-millis> [limit]          largestdirs <k>
+//   import <path> <disk-directory>                      metrics
+//   usage [path]                                        diff <manifest>
+//   quit
+//
+// Nodes are written as: kind, path, size, last-modified millis and access level, tab-separated.
+// Usage is written as: breakdown (ext, access, depth or top), key, count and bytes, tab-separated.
+// ls with a limit writes at most that many children and then, if there are more, a line
+// "# next <token>", with the token in double quotes; pass it back to get the next page.
+// diff writes the changes that turn the tree into the manifest's as: added, removed or changed,
+// then the node as it is in the manifest (as it was, for removed), tab-separated.
+// Safe to use from many threads on one FileSystem; the writer belongs to the caller.
+public class CommandProcessor {
+    public enum Status { OK, FAILED, QUIT }
+
+    private final FileSystem fileSystem;
+
+    public CommandProcessor(FileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    // Failures are reported as ERR lines and in the returned status; they never throw
+    public Status execute(String line, PrintWriter out) {
+        List<String> args;
+        try {
+            args = split(line);
+        } catch (IllegalArgumentException e) {
+            out.println("ERR " + e.getMessage());
+            return Status.FAILED;
+        }
+        if (args.isEmpty() || args.get(0).startsWith("#")) {
+            return Status.OK;
+        }
+        String command = args.get(0);
+        if (command.equals("quit")) {
+            out.println("OK 0");
+            return Status.QUIT;
+        }
+        try {
+            out.println("OK " + run(command, args, out));
+            return Status.OK;
+        } catch (FileSystemException | IOException | RuntimeException e) {
+            out.println("ERR " + e.getMessage());
+            return Status.FAILED;
+        }
+    }
+
+    // Returns the number of result lines written
+    private long run(String command, List<String> args, PrintWriter out) throws FileSystemException, IOException {
+        switch (command) {
+            case "mkdir" -> {
+                expect(args, 3, 4);
+                fileSystem.addDirectory(args.get(1), args.get(2), args.size() > 3 ? args.get(3) : "USER");
+                return 0;
+            }
+            case "add" -> {
+                expect(args, 5, 7);
+                Date lastModified = args.size() > 6 ? new Date(Long.parseLong(args.get(6))) : new Date();
+                fileSystem.addFile(args.get(1), args.get(2), args.get(3), Long.parseLong(args.get(4)),
+                        args.size() > 5 ? args.get(5) : "USER", lastModified);
+                return 0;
+            }
+            case "rmdir" -> {
+                expect(args, 3, 3);
+                fileSystem.removeDirectory(args.get(1), args.get(2));
+                return 0;
+            }
+            case "rmtree" -> {
+                expect(args, 3, 3);
+                out.println(fileSystem.removeDirectoryRecursively(args.get(1), args.get(2)) + " removed");
+                return 1;
+            }
+            case "rm" -> {
+                expect(args, 3, 3);
+                fileSystem.removeFile(args.get(1), args.get(2));
+                return 0;
+            }
+            case "ls" -> {
+                expect(args, 2, 4);
+                if (args.size() == 2) {
+                    return print(fileSystem.getContents(args.get(1)), out);
+                }
+                DirectoryListing listing = fileSystem.openListing(args.get(1), args.size() > 3 ? args.get(3) : null);
+                long count = print(listing.nextPage(Integer.parseInt(args.get(2))), out);
+                if (listing.hasNext()) {
+                    out.println("# next \"" + listing.getResumeToken() + '"');
+                    count++;
+                }
+                return count;
+            }
+            case "tree" -> {
+                expect(args, 1, 1);
+                long[] count = new long[1];
+                StringBuilder buffer = new StringBuilder();
+                fileSystem.walk((node, depth) -> {
+                    out.println(format(node, buffer));
+                    count[0]++;
+                    return true;
+                });
+                return count[0];
+            }
+            case "find" -> {
+                expect(args, 2, 2);
+                return print(fileSystem.searchByName(args.get(1)), out);
+            }
+            case "ext" -> {
+                expect(args, 2, 2);
+                return print(fileSystem.searchByExtension(args.get(1)), out);
+            }
+            case "prefix", "contains", "glob" -> {
+                expect(args, 2, 3);
+                int limit = args.size() > 2 ? Integer.parseInt(args.get(2)) : 0;
+                String text = args.get(1);
+                return print(command.equals("prefix") ? fileSystem.searchByPrefix(text, limit)
+                        : command.equals("contains") ? fileSystem.searchContaining(text, limit)
+                        : fileSystem.searchByGlob(text, limit), out);
+            }
+            case "sizes", "modified" -> {
+                expect(args, 3, 4);
+                int limit = args.size() > 3 ? Integer.parseInt(args.get(3)) : 0;
+                long from = Long.parseLong(args.get(1));
+                long to = Long.parseLong(args.get(2));
+                return print(command.equals("sizes") ? fileSystem.searchBySize(from, to, limit)
+                        : fileSystem.searchByLastModified(new Date(from), new Date(to), limit), out);
+            }
+            case "largest", "newest", "largestdirs" -> {
+                expect(args, 2, 2);
+                int k = Integer.parseInt(args.get(1));
+                return print(command.equals("largest") ? fileSystem.largestFiles(k)
+                        : command.equals("newest") ? fileSystem.newestFiles(k)
+                        : fileSystem.largestDirectories(k), out);
+            }
+            case "size" -> {
+                expect(args, 2, 2);
+                DirectoryNode directory = fileSystem.findDirectory(args.get(1));
+                if (directory == null) {
+                    throw new InvalidPathException("Directory not found: " + args.get(1));
+                }
+                out.println(format(directory, new StringBuilder()));
+                return 1;
+            }
+            case "import" -> {
+                expect(args, 3, 3);
+                DiskScanner scanner = new DiskScanner();
+                fileSystem.importFromDisk(args.get(1), args.get(2), scanner);
+                out.printf("# %d entries, %d errors%s, %.0f entries/s%n", scanner.getEntries(), scanner.getErrors(),
+                        scanner.isTruncated() ? ", truncated" : "", scanner.getEntriesPerSecond());
+                return 1;
+            }
+            case "usage" -> {
+                expect(args, 1, 2);
+                return print(args.size() > 1 ? fileSystem.computeUsage(args.get(1)) : fileSystem.getUsage(), out);
+            }
+            case "diff" -> {
+                expect(args, 2, 2);
+                FileSystem other = new FileSystem();
+                other.loadFromFileSystem(args.get(1));
+                long count = 0;
+                StringBuilder buffer = new StringBuilder();
+                for (Iterator<TreeDiff.Change> changes = fileSystem.diff(other); changes.hasNext(); count++) {
+                    TreeDiff.Change change = changes.next();
+                    out.println(change.getKind().name().toLowerCase(Locale.ROOT) + '\t' + format(change.getNode(), buffer));
+                }
+                return count;
+            }
+            case "metrics" -> {
+                expect(args, 1, 1);
+                String report = fileSystem.dumpMetrics();
+                out.print(report);
+                return report.lines().count();
+            }
+            default -> throw new FileSystemException("Unknown command: " + command);
+        }
+    }
+
+    private static long print(List<? extends TreeNode> nodes, PrintWriter out) {
+        StringBuilder buffer = new StringBuilder();
+        for (TreeNode node : nodes) {
+            out.println(format(node, buffer));
+        }
+        return nodes.size();
+    }
+
+    private static long print(UsageReport report, PrintWriter out) {
+        long lines = print("ext", report.byExtension(), out) + print("access", report.byAccessLevel(), out);
+        for (int depth = 0; depth < report.byDepth().size(); depth++) {
+            print("depth", depth, report.byDepth().get(depth), out);
+        }
+        return lines + report.byDepth().size() + print("top", report.byTopLevel(), out);
+    }
+
+    private static long print(String breakdown, Map<?, UsageReport.Usage> usage, PrintWriter out) {
+        usage.forEach((key, value) -> print(breakdown, key, value, out));
+        return usage.size();
+    }
+
+    private static void print(String breakdown, Object key, UsageReport.Usage usage, PrintWriter out) {
+        out.println(breakdown + '\t' + key + '\t' + usage.getCount() + '\t' + usage.getBytes());
+    }
+
+    private static String format(TreeNode node, StringBuilder buffer) {
+        buffer.setLength(0);
+        buffer.append(node instanceof DirectoryNode ? "dir\t" : "file\t");
+        node.appendFullPath(buffer);
+        return buffer.append('\t').append(node.getSize())
+                .append('\t').append(node.getLastModified().getTime())
+                .append('\t').append(node.getAccessLevel())
+                .toString();
+    }
+
+    private static void expect(List<String> args, int min, int max) throws FileSystemException {
+        if (args.size() < min || args.size() > max) {
+            throw new FileSystemException("Wrong number of arguments for " + args.get(0));
+        }
+    }
+
+    static List<String> split(String line) {
+        List<String> args = new ArrayList<>();
+        int i = 0;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = line.indexOf('"', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated quote");
+                }
+                args.add(line.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+                    end++;
+                }
+                args.add(line.substring(i, end));
+                i = end;
+            }
+        }
+        return args;
+    }
+}
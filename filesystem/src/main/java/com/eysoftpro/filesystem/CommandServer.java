@@ -0,0 +1,126 @@
+package com.eysoftpro.filesystem;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Local TCP server for the CommandProcessor language, bound to the loopback address. Every
+// connection is served on its own virtual thread, so thousands of mostly idle clients cost little,
+// and all of them share one FileSystem. Before Java 21 connections get platform threads, at most
+// MAX_CONNECTION_THREADS of them; a client beyond that gets an ERR line and is disconnected.
+// Replies are buffered and flushed once the client has no more commands waiting, so pipelined
+// commands share writes.
+public class CommandServer implements Closeable {
+    private static final int MAX_CONNECTION_THREADS = 256;
+    private static final long IDLE_THREAD_SECONDS = 60;
+
+    private final ServerSocket serverSocket;
+    private final CommandProcessor processor;
+    private final ExecutorService connections;
+    private final Thread acceptor;
+
+    // Port 0 picks a free port; see getPort()
+    public CommandServer(FileSystem fileSystem, int port) throws IOException {
+        this(fileSystem, port, newConnectionExecutor());
+    }
+
+    CommandServer(FileSystem fileSystem, int port, ExecutorService connections) throws IOException {
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.processor = new CommandProcessor(fileSystem);
+        this.connections = connections;
+        this.acceptor = new Thread(this::acceptLoop, "command-server-" + getPort());
+        this.acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Blocks until the server is closed
+    public void awaitTermination() throws InterruptedException {
+        acceptor.join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                try {
+                    connections.execute(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    reject(socket);
+                }
+            } catch (SocketException e) {
+                return; // closed
+            } catch (IOException e) {
+                System.err.println("Command server: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), 1 << 16))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (processor.execute(line, out) == CommandProcessor.Status.QUIT) {
+                    break;
+                }
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The client went away; nothing to report to it
+        }
+    }
+
+    // Runs on the acceptor thread. The one short line fits in the socket's send buffer, so this does
+    // not wait for the client to read it.
+    private static void reject(Socket socket) {
+        try (socket) {
+            socket.getOutputStream().write("ERR Too many connections\n".getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // The client went away; nothing to report to it
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is looked up reflectively so the module still
+    // builds for Java 17
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return newBoundedExecutor(MAX_CONNECTION_THREADS);
+        }
+    }
+
+    // Platform threads are bounded so that a flood of clients cannot exhaust memory with thread
+    // stacks. Nothing is queued: a connection beyond maxThreads is rejected. Idle threads time out.
+    static ExecutorService newBoundedExecutor(int maxThreads) {
+        return new ThreadPoolExecutor(0, maxThreads, IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>());
+    }
+}
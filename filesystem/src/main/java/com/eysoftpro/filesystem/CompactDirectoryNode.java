@@ -0,0 +1,146 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Read-only DirectoryNode view of one CompactTree entry
+public class CompactDirectoryNode extends DirectoryNode {
+    private final CompactTree tree;
+    private final int id;
+
+    CompactDirectoryNode(CompactTree tree, int id) {
+        super(tree.name(id));
+        this.tree = tree;
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public Date getLastModified() {
+        return new Date(tree.modified(id));
+    }
+
+    @Override
+    public long getSize() {
+        return tree.size(id);
+    }
+
+    @Override
+    public AccessLevel getAccessLevel() {
+        return tree.accessLevel(id);
+    }
+
+    @Override
+    public DirectoryNode getParent() {
+        return (DirectoryNode) tree.viewOrNull(tree.parent(id));
+    }
+
+    @Override
+    TreeNode getNextSibling() {
+        return tree.viewOrNull(tree.nextSibling(id));
+    }
+
+    @Override
+    TreeNode getFirstChild() {
+        return tree.viewOrNull(tree.firstChild(id));
+    }
+
+    @Override
+    public long getDescendantCount() {
+        return tree.descendants(id);
+    }
+
+    @Override
+    public long getSystemDescendantCount() {
+        return tree.systemDescendants(id);
+    }
+
+    // Counted when asked, like getChildCount: the tree keeps no per-directory child counts
+    @Override
+    int getSystemChildCount() {
+        int system = 0;
+        for (int child = tree.firstChild(id); child != -1; child = tree.nextSibling(child)) {
+            if (tree.accessLevel(child) == AccessLevel.SYSTEM) {
+                system++;
+            }
+        }
+        return system;
+    }
+
+    @Override
+    public long getContentHash() {
+        return tree.contentHash(id);
+    }
+
+    @Override
+    public int getChildCount() {
+        int children = 0;
+        for (int child = tree.firstChild(id); child != -1; child = tree.nextSibling(child)) {
+            children++;
+        }
+        return children;
+    }
+
+    @Override
+    public FileNode getFile(String name) {
+        int child = tree.child(id, name, false);
+        return child == -1 ? null : (FileNode) tree.view(child);
+    }
+
+    @Override
+    public DirectoryNode getDirectory(String name) {
+        int child = tree.child(id, name, true);
+        return child == -1 ? null : (DirectoryNode) tree.view(child);
+    }
+
+    @Override
+    public Iterable<TreeNode> children() {
+        return () -> new Iterator<TreeNode>() {
+            private int next = tree.firstChild(id);
+
+            @Override
+            public boolean hasNext() {
+                return next != -1;
+            }
+
+            @Override
+            public TreeNode next() {
+                if (next == -1) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                next = tree.nextSibling(current);
+                return tree.view(current);
+            }
+        };
+    }
+
+    @Override
+    public void addChild(TreeNode child) {
+        throw new UnsupportedOperationException("CompactTree is read-only");
+    }
+
+    @Override
+    public void removeChild(TreeNode child) {
+        throw new UnsupportedOperationException("CompactTree is read-only");
+    }
+
+    @Override
+    public StringBuilder appendFullPath(StringBuilder out) {
+        return tree.appendPath(id, out);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CompactDirectoryNode && ((CompactDirectoryNode) o).tree == tree && ((CompactDirectoryNode) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+}
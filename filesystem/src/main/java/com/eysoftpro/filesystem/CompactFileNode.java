@@ -0,0 +1,59 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Date;
+
+// Read-only FileNode view of one CompactTree entry
+public class CompactFileNode extends FileNode {
+    private final CompactTree tree;
+    private final int id;
+
+    CompactFileNode(CompactTree tree, int id) {
+        super(tree.name(id), null, 0, null, tree.extension(id)); // CompactTree interns its extensions
+        this.tree = tree;
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public Date getLastModified() {
+        return new Date(tree.modified(id));
+    }
+
+    @Override
+    public long getSize() {
+        return tree.size(id);
+    }
+
+    @Override
+    public AccessLevel getAccessLevel() {
+        return tree.accessLevel(id);
+    }
+
+    @Override
+    public DirectoryNode getParent() {
+        return (DirectoryNode) tree.viewOrNull(tree.parent(id));
+    }
+
+    @Override
+    TreeNode getNextSibling() {
+        return tree.viewOrNull(tree.nextSibling(id));
+    }
+
+    @Override
+    public StringBuilder appendFullPath(StringBuilder out) {
+        return tree.appendPath(id, out).append('.').append(getExtension());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CompactFileNode && ((CompactFileNode) o).tree == tree && ((CompactFileNode) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+}
@@ -0,0 +1,266 @@
+package com.eysoftpro.filesystem;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Struct-of-arrays node store for very large trees. Every node is an int id (assigned in
+// pre-order, so parents always have smaller ids) with its fields in primitive arrays: parent and
+// sibling links, epoch-millisecond dates, 64-bit sizes and one flag byte. Names are stored once in a
+// dictionary, together with their extension. Aggregates are computed once when loading finishes.
+// That is about 50 bytes per node, against several hundred for a FileNode with its Date and Strings.
+//
+// The tree is read-only once loaded. getRoot() and view() return lightweight TreeNode views that
+// are created on demand, so the traversal engine and printing code work on it unchanged.
+public class CompactTree {
+    private static final byte DIRECTORY = 1;
+    private static final byte SYSTEM = 2;
+    private static final int NONE = -1;
+
+    private int count;
+    private int[] parent = new int[1024];
+    private int[] firstChild = new int[1024];
+    private int[] lastChild = new int[1024]; // Only needed while loading
+    private int[] nextSibling = new int[1024];
+    private int[] nameId = new int[1024];
+    private int[] descendants = new int[1024];
+    private int[] systemDescendants = new int[1024];
+    private long[] modified = new long[1024];
+    private long[] size = new long[1024];
+    private long[] contentHash; // directories only; computed with the aggregates
+    private byte[] flags = new byte[1024];
+
+    private final List<String> names = new ArrayList<>();
+    private final List<String> extensions = new ArrayList<>();
+    private Map<String, Integer> nameIds = new HashMap<>(); // Only needed while loading
+
+    public CompactTree() {
+        add(NONE, "root", System.currentTimeMillis(), 0, DIRECTORY);
+    }
+
+    public static CompactTree load(String filePath) throws IOException {
+        CompactTree tree = new CompactTree();
+        try (Reader reader = new FileReader(filePath)) {
+            new FileSystemLoader(tree.new Builder()).load(reader);
+        }
+        return tree;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public DirectoryNode getRoot() {
+        return (DirectoryNode) view(0);
+    }
+
+    public TreeNode view(int id) {
+        return (flags[id] & DIRECTORY) != 0 ? new CompactDirectoryNode(this, id) : new CompactFileNode(this, id);
+    }
+
+    TreeNode viewOrNull(int id) {
+        return id == NONE ? null : view(id);
+    }
+
+    String name(int id) {
+        return names.get(nameId[id]);
+    }
+
+    String extension(int id) {
+        return extensions.get(nameId[id]);
+    }
+
+    int parent(int id) {
+        return parent[id];
+    }
+
+    int firstChild(int id) {
+        return firstChild[id];
+    }
+
+    int nextSibling(int id) {
+        return nextSibling[id];
+    }
+
+    int descendants(int id) {
+        return descendants[id];
+    }
+
+    int systemDescendants(int id) {
+        return systemDescendants[id];
+    }
+
+    long modified(int id) {
+        return modified[id];
+    }
+
+    long size(int id) {
+        return size[id];
+    }
+
+    long contentHash(int id) {
+        return contentHash != null ? contentHash[id] : 0; // null until loading finishes
+    }
+
+    AccessLevel accessLevel(int id) {
+        return (flags[id] & SYSTEM) != 0 ? AccessLevel.SYSTEM : AccessLevel.USER;
+    }
+
+    boolean isDirectory(int id) {
+        return (flags[id] & DIRECTORY) != 0;
+    }
+
+    // Children have no name index here, so lookups scan the siblings
+    int child(int dir, String name, boolean directory) {
+        for (int child = firstChild[dir]; child != NONE; child = nextSibling[child]) {
+            if (isDirectory(child) == directory && name(child).equals(name)) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    StringBuilder appendPath(int id, StringBuilder out) {
+        int length = -1;
+        for (int node = id; node != NONE; node = parent[node]) {
+            length += name(node).length() + 1;
+        }
+        int end = out.length() + length;
+        out.setLength(end);
+        for (int node = id; node != NONE; ) {
+            String part = name(node);
+            for (int i = part.length() - 1; i >= 0; i--) {
+                out.setCharAt(--end, part.charAt(i));
+            }
+            node = parent[node];
+            if (node != NONE) {
+                out.setCharAt(--end, '/');
+            }
+        }
+        return out;
+    }
+
+    private int add(int parentId, String name, long lastModified, long bytes, byte nodeFlags) {
+        if (count == parent.length) {
+            grow();
+        }
+        int id = count++;
+        parent[id] = parentId;
+        firstChild[id] = NONE;
+        lastChild[id] = NONE;
+        nextSibling[id] = NONE;
+        nameId[id] = intern(name);
+        modified[id] = lastModified;
+        size[id] = bytes;
+        flags[id] = nodeFlags;
+        if (parentId != NONE) {
+            if (lastChild[parentId] == NONE) {
+                firstChild[parentId] = id;
+            } else {
+                nextSibling[lastChild[parentId]] = id;
+            }
+            lastChild[parentId] = id;
+        }
+        return id;
+    }
+
+    private int intern(String name) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = names.size();
+            nameIds.put(name, id);
+            names.add(name);
+            extensions.add(name.substring(name.lastIndexOf('.') + 1).intern());
+        }
+        return id;
+    }
+
+    private void grow() {
+        int capacity = parent.length + (parent.length >> 1);
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        lastChild = Arrays.copyOf(lastChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        nameId = Arrays.copyOf(nameId, capacity);
+        descendants = Arrays.copyOf(descendants, capacity);
+        systemDescendants = Arrays.copyOf(systemDescendants, capacity);
+        modified = Arrays.copyOf(modified, capacity);
+        size = Arrays.copyOf(size, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    // Ids are in pre-order, so walking them backwards finishes every node before its parent
+    private void computeAggregates() {
+        int[] children = new int[count];
+        int[] systemChildren = new int[count];
+        contentHash = new long[count];
+        for (int id = count - 1; id >= 0; id--) {
+            if (isDirectory(id) && children[id] > 0) {
+                flags[id] = systemChildren[id] == children[id] ? (byte) (DIRECTORY | SYSTEM) : DIRECTORY;
+            }
+            int p = parent[id];
+            if (p == NONE) {
+                continue;
+            }
+            size[p] += size[id];
+            descendants[p] += descendants[id] + 1;
+            contentHash[p] += isDirectory(id) ? ContentHash.directory(name(id), contentHash[id])
+                    : ContentHash.file(name(id), extension(id), size[id], modified[id], accessLevel(id));
+            if (children[p] == 0 || modified[id] > modified[p]) {
+                modified[p] = modified[id];
+            }
+            children[p]++;
+            systemDescendants[p] += systemDescendants[id];
+            if ((flags[id] & SYSTEM) != 0) {
+                systemChildren[p]++;
+                systemDescendants[p]++;
+            }
+        }
+    }
+
+    // Trims the arrays and drops what was only needed for building
+    private void seal() {
+        parent = Arrays.copyOf(parent, count);
+        firstChild = Arrays.copyOf(firstChild, count);
+        nextSibling = Arrays.copyOf(nextSibling, count);
+        nameId = Arrays.copyOf(nameId, count);
+        descendants = Arrays.copyOf(descendants, count);
+        systemDescendants = Arrays.copyOf(systemDescendants, count);
+        modified = Arrays.copyOf(modified, count);
+        size = Arrays.copyOf(size, count);
+        flags = Arrays.copyOf(flags, count);
+        lastChild = null;
+        nameIds = null;
+    }
+
+    // Directory handles are boxed ids. Duplicate names are not detected: that would need a name
+    // index per directory, which is what this store avoids.
+    private final class Builder implements FileSystemLoader.Sink {
+        @Override
+        public Object root() {
+            return 0;
+        }
+
+        @Override
+        public Object directory(Object parentHandle, String name, long lastModified) {
+            return add((Integer) parentHandle, name, lastModified, 0, DIRECTORY);
+        }
+
+        @Override
+        public boolean file(Object parentHandle, String name, long lastModified, long bytes, AccessLevel accessLevel) {
+            add((Integer) parentHandle, name, lastModified, bytes, accessLevel == AccessLevel.SYSTEM ? SYSTEM : 0);
+            return true;
+        }
+
+        @Override
+        public void finish() {
+            computeAggregates();
+            seal();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.eysoftpro.filesystem;
+
+// 64-bit hashes for comparing trees (see TreeDiff). A file hashes its name, extension, size, date
+// and access level; a directory hashes its name and its content hash, which is the sum of its
+// children's hashes. A sum does not depend on the order of the children, and adding, removing or
+// replacing one child is a single addition, so a change is applied to each ancestor in O(1).
+// A directory's own date and access level are left out: for loaded trees they are load-time values.
+final class ContentHash {
+    private static final long FILE_SEED = 0xcbf29ce484222325L; // FNV-1a offset basis
+    private static final long DIRECTORY_SEED = 0x84222325cbf29ce4L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private ContentHash() {
+    }
+
+    static long of(TreeNode node) {
+        if (node instanceof DirectoryNode) {
+            return directory(node.getName(), ((DirectoryNode) node).getContentHash());
+        }
+        FileNode file = (FileNode) node;
+        return file(file.getName(), file.getExtension(), file.getSize(), file.getLastModified().getTime(), file.getAccessLevel());
+    }
+
+    static long file(String name, String extension, long size, long lastModified, AccessLevel accessLevel) {
+        long h = string((string(FILE_SEED, name) ^ '/') * PRIME, extension);
+        h = mix(h + size);
+        h = mix(h + lastModified);
+        return mix(h + accessLevel.ordinal());
+    }
+
+    static long directory(String name, long contentHash) {
+        return mix(mix(string(DIRECTORY_SEED, name)) + contentHash);
+    }
+
+    private static long string(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * PRIME;
+        }
+        return h;
+    }
+
+    // The splitmix64 finalizer: every input bit affects every output bit, so sums of hashes do not cancel
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
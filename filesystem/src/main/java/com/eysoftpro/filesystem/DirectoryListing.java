@@ -0,0 +1,86 @@
+package com.eysoftpro.filesystem;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// A cursor over one directory's children in insertion order, read a page at a time (see
+// FileSystem.openListing). It only holds its position in the sibling links, so paging through a
+// directory of any size takes constant memory. The resume token names the last child returned and
+// how many were returned: a listing opened from it carries on right after that child, or, if the
+// child was removed meanwhile, after as many children as were returned, which can skip or repeat
+// children that were removed or added before it.
+public class DirectoryListing implements Iterator<TreeNode> {
+    private final DirectoryNode directory;
+    private TreeNode next;
+    private TreeNode last;
+    private long returned; // Children returned so far, counting the pages before the token
+    private String token;
+
+    DirectoryListing(DirectoryNode directory, String resumeToken) throws FileSystemException {
+        this.directory = directory;
+        this.token = resumeToken;
+        if (resumeToken == null) {
+            next = directory.getFirstChild();
+            return;
+        }
+        int colon = resumeToken.indexOf(':');
+        if (colon <= 0 || colon + 1 >= resumeToken.length() || "df".indexOf(resumeToken.charAt(colon + 1)) < 0) {
+            throw new FileSystemException("Invalid listing token: " + resumeToken);
+        }
+        try {
+            returned = Long.parseLong(resumeToken.substring(0, colon));
+        } catch (NumberFormatException e) {
+            throw new FileSystemException("Invalid listing token: " + resumeToken);
+        }
+        String name = resumeToken.substring(colon + 2);
+        TreeNode child = resumeToken.charAt(colon + 1) == 'd' ? directory.getDirectory(name) : directory.getFile(name);
+        if (child != null && child.getParent() == directory) {
+            next = child.getNextSibling();
+        } else {
+            next = directory.getFirstChild();
+            for (long i = 0; i < returned && next != null; i++) {
+                next = next.getNextSibling();
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public TreeNode next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        last = next;
+        next = last.getNextSibling();
+        returned++;
+        token = null;
+        return last;
+    }
+
+    // Up to pageSize more children; empty once the listing is over
+    public List<TreeNode> nextPage(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        List<TreeNode> page = new ArrayList<>(Math.min(pageSize, directory.getChildCount()));
+        while (page.size() < pageSize && hasNext()) {
+            page.add(next());
+        }
+        return page;
+    }
+
+    // Where a later listing should carry on: after the last child returned. null while nothing has
+    // been returned from the start of the directory.
+    public String getResumeToken() {
+        if (token == null && last != null) {
+            token = returned + ":" + (last instanceof DirectoryNode ? 'd' : 'f') + last.getName();
+        }
+        return token;
+    }
+}
@@ -0,0 +1,350 @@
+package com.eysoftpro.filesystem;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class DirectoryNode extends TreeNode {
+    // Children are indexed by name, files and directories in separate namespaces,
+    // and kept in insertion order through the sibling links. Lookups and iteration are safe while
+    // one writer at a time changes the children (FileSystem holds this directory's write lock).
+    private final Map<String, FileNode> files;
+    private final Map<String, DirectoryNode> directories;
+    private volatile TreeNode firstChild;
+    private volatile TreeNode lastChild;
+
+    // size, lastModified and accessLevel are aggregates of the children. They are kept current by
+    // applying each add/remove as a delta up the parent chain, so reading them is O(1).
+    private final AccessLevel ownAccessLevel; // Used while the directory is empty
+    private final Date ownLastModified;
+    private int systemChildren; // Children whose access level is SYSTEM
+    private volatile long descendants; // Nodes anywhere below this directory
+    private volatile long systemDescendants; // SYSTEM nodes anywhere below this directory
+    private volatile long contentHash; // Sum of the children's ContentHash values
+
+    public DirectoryNode(String name, Date lastModified, AccessLevel accessLevel) {
+        super(name, lastModified, 0, accessLevel); // Size will be calculated dynamically
+        this.files = new ConcurrentHashMap<>();
+        this.directories = new ConcurrentHashMap<>();
+        this.ownAccessLevel = accessLevel;
+        this.ownLastModified = lastModified;
+    }
+
+    // For views that keep their children and aggregates elsewhere and override every accessor
+    protected DirectoryNode(String name) {
+        super(name, null, 0, null);
+        this.files = null;
+        this.directories = null;
+        this.ownAccessLevel = null;
+        this.ownLastModified = null;
+    }
+    public void addChild(TreeNode child) {
+        if (this.accessLevel == AccessLevel.USER) {
+            if (attachChild(child)) {
+                propagateChange(child.size, subtreeNodes(child), child.accessLevel == AccessLevel.SYSTEM ? 1 : 0, systemNodes(child), null, child.lastModified,
+                        ContentHash.of(child));
+            } else {
+                System.out.println("Cannot add child. An entry named " + child.getName() + " already exists.");
+            }
+        } else {
+            System.out.println("Cannot add child. Directory access level is SYSTEM.");
+        }
+    }
+    public void removeChild(TreeNode child) {
+        if (child.getParent() == this && this.accessLevel == AccessLevel.USER) {
+            detachChild(child);
+            propagateChange(-child.size, -subtreeNodes(child), child.accessLevel == AccessLevel.SYSTEM ? -1 : 0, -systemNodes(child), child.lastModified, null,
+                    -ContentHash.of(child));
+        } else {
+            System.out.println("Cannot remove child. Either it's not found, or directory access level is SYSTEM.");
+        }
+    }
+
+    // Links a child without access checks or recalculation; bulk loaders call recalculateProperties() once at the end.
+    // Returns false if the name is already taken in the child's namespace.
+    boolean attachChild(TreeNode child) {
+        if (child instanceof FileNode) {
+            if (files.putIfAbsent(child.getName(), (FileNode) child) != null) return false;
+        } else if (directories.putIfAbsent(child.getName(), (DirectoryNode) child) != null) {
+            return false;
+        }
+        child.previousSibling = lastChild;
+        child.nextSibling = null;
+        if (lastChild == null) {
+            firstChild = child;
+        } else {
+            lastChild.nextSibling = child;
+        }
+        lastChild = child;
+        child.setParent(this);
+        return true;
+    }
+
+    void detachChild(TreeNode child) {
+        if (child instanceof FileNode) {
+            files.remove(child.getName());
+        } else {
+            directories.remove(child.getName());
+        }
+        if (child.previousSibling == null) {
+            firstChild = child.nextSibling;
+        } else {
+            child.previousSibling.nextSibling = child.nextSibling;
+        }
+        if (child.nextSibling == null) {
+            lastChild = child.previousSibling;
+        } else {
+            child.nextSibling.previousSibling = child.previousSibling;
+        }
+        // nextSibling is left in place so an iterator standing on the removed child can still move on
+        child.previousSibling = null;
+        child.setParent(null);
+    }
+
+    public FileNode getFile(String name) {
+        return files.get(name);
+    }
+
+    public DirectoryNode getDirectory(String name) {
+        return directories.get(name);
+    }
+
+    TreeNode getFirstChild() {
+        return firstChild;
+    }
+
+    public int getChildCount() {
+        return files.size() + directories.size();
+    }
+
+    // Walks the children in insertion order without copying them
+    public Iterable<TreeNode> children() {
+        return () -> new Iterator<TreeNode>() {
+            private TreeNode next = firstChild;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public TreeNode next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                TreeNode current = next;
+                next = current.nextSibling;
+                return current;
+            }
+        };
+    }
+
+    // Recomputes the aggregates from the children's current values; only this directory is updated
+    synchronized void recalculateProperties() {
+        long totalSize = 0;
+        long nodes = 0;
+        int system = 0;
+        long systemNodes = 0;
+        long hash = 0;
+
+        for (TreeNode child : children()) {
+            totalSize += child.size;
+            nodes += subtreeNodes(child);
+            systemNodes += systemNodes(child);
+            if (child.accessLevel == AccessLevel.SYSTEM) {
+                system++;
+            }
+            hash += ContentHash.of(child);
+        }
+
+        this.size = totalSize;
+        this.descendants = nodes;
+        this.systemChildren = system;
+        this.systemDescendants = systemNodes;
+        this.contentHash = hash;
+        this.lastModified = latestModified();
+        this.accessLevel = derivedAccessLevel();
+    }
+
+    // Brings the aggregates up to date after attachChild/detachChild calls that skipped them: this
+    // directory is recomputed from its children and the net change is applied to its ancestors
+    void recalculateAfterBatch() {
+        long sizeBefore;
+        long countBefore;
+        long systemBefore;
+        AccessLevel accessBefore;
+        Date dateBefore;
+        long hashBefore;
+        synchronized (this) {
+            hashBefore = ContentHash.directory(name, contentHash);
+            sizeBefore = size;
+            countBefore = descendants;
+            systemBefore = systemDescendants;
+            accessBefore = accessLevel;
+            dateBefore = lastModified;
+            recalculateProperties();
+        }
+        DirectoryNode parent = getParent();
+        if (parent != null) {
+            int systemDelta = accessBefore == accessLevel ? 0 : (accessLevel == AccessLevel.SYSTEM ? 1 : -1);
+            parent.propagateChange(size - sizeBefore, descendants - countBefore, systemDelta,
+                    systemDescendants - systemBefore + systemDelta, dateBefore, lastModified,
+                    ContentHash.directory(name, contentHash) - hashBefore);
+        }
+    }
+
+    // Applies one child's change here and in every ancestor: sizeDelta bytes, countDelta nodes,
+    // systemDelta SYSTEM children, systemNodesDelta SYSTEM nodes in the whole subtree, and the
+    // child's date going from oldDate to newDate (null when added or removed), and hashDelta added
+    // to the content hash; each directory's own hash then changes by a delta of its own.
+    // Only dates that may have been the latest trigger a rescan, and only of that directory's children.
+    // Writers in disjoint subtrees meet at their common ancestors, so each level is updated under
+    // that directory's monitor, one level at a time.
+    private void propagateChange(long sizeDelta, long countDelta, int systemDelta, long systemNodesDelta, Date oldDate, Date newDate,
+                                 long hashDelta) {
+        DirectoryNode dir = this;
+        while (dir != null) {
+            synchronized (dir) {
+                AccessLevel accessBefore = dir.accessLevel;
+                Date dateBefore = dir.lastModified;
+                long hashBefore = ContentHash.directory(dir.name, dir.contentHash);
+
+                dir.size += sizeDelta;
+                dir.descendants += countDelta;
+                dir.systemChildren += systemDelta;
+                dir.systemDescendants += systemNodesDelta;
+                dir.contentHash += hashDelta;
+                if (dir.getChildCount() == 0 || (oldDate == null && dir.getChildCount() == 1)) {
+                    dir.lastModified = dir.latestModified();
+                } else if (newDate != null && newDate.after(dir.lastModified)) {
+                    dir.lastModified = newDate;
+                } else if (oldDate != null && oldDate.equals(dir.lastModified) && (newDate == null || newDate.before(oldDate))) {
+                    dir.lastModified = dir.latestModified();
+                }
+                dir.accessLevel = dir.derivedAccessLevel();
+
+                // What the parent sees changing is this directory, and whether it became SYSTEM itself
+                systemDelta = accessBefore == dir.accessLevel ? 0 : (dir.accessLevel == AccessLevel.SYSTEM ? 1 : -1);
+                systemNodesDelta += systemDelta;
+                oldDate = dateBefore;
+                newDate = dir.lastModified;
+                hashDelta = ContentHash.directory(dir.name, dir.contentHash) - hashBefore;
+            }
+            if (sizeDelta == 0 && countDelta == 0 && systemNodesDelta == 0 && oldDate.equals(newDate) && hashDelta == 0) {
+                return;
+            }
+            dir = dir.getParent();
+        }
+    }
+
+    private static long subtreeNodes(TreeNode node) {
+        return node instanceof DirectoryNode ? ((DirectoryNode) node).descendants + 1 : 1;
+    }
+
+    private static long systemNodes(TreeNode node) {
+        long below = node instanceof DirectoryNode ? ((DirectoryNode) node).systemDescendants : 0;
+        return node.accessLevel == AccessLevel.SYSTEM ? below + 1 : below;
+    }
+
+    // Number of nodes below this directory, at any depth
+    public long getDescendantCount() {
+        return descendants;
+    }
+
+    // Number of SYSTEM files and directories below this directory, at any depth
+    public long getSystemDescendantCount() {
+        return systemDescendants;
+    }
+
+    // Equal for two directories with the same children, compared by name, size, date and access
+    // level all the way down (see ContentHash); kept current like the other aggregates
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    int getSystemChildCount() {
+        return systemChildren;
+    }
+
+    AccessLevel getOwnAccessLevel() {
+        return ownAccessLevel;
+    }
+
+    Date getOwnLastModified() {
+        return ownLastModified;
+    }
+
+    // Sets aggregates that were saved earlier, instead of recomputing them from the children
+    synchronized void restoreAggregates(long size, Date lastModified, AccessLevel accessLevel, int systemChildren, long descendants,
+                                        long systemDescendants) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.accessLevel = accessLevel;
+        this.systemChildren = systemChildren;
+        this.descendants = descendants;
+        this.systemDescendants = systemDescendants;
+    }
+
+    // Sets a content hash that was computed elsewhere
+    synchronized void restoreContentHash(long contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    // Derives the content hash from the children's values, once all of them are attached
+    synchronized void restoreContentHash() {
+        long hash = 0;
+        for (TreeNode child : children()) {
+            hash += ContentHash.of(child);
+        }
+        this.contentHash = hash;
+    }
+
+    private Date latestModified() {
+        Date latest = null;
+        for (TreeNode child : children()) {
+            if (latest == null || child.lastModified.after(latest)) {
+                latest = child.lastModified;
+            }
+        }
+        return latest != null ? latest : ownLastModified;
+    }
+
+    // A non-empty directory is SYSTEM exactly when all of its children are
+    private AccessLevel derivedAccessLevel() {
+        int count = getChildCount();
+        if (count == 0) {
+            return ownAccessLevel;
+        }
+        return systemChildren == count ? AccessLevel.SYSTEM : AccessLevel.USER;
+    }
+    // This directory's line and every node below it, each once
+    @Override
+    public void printDetails() {
+        ListingWriter out = ListingWriter.console();
+        synchronized (out) {
+            TreeTraversal.walk(this, (node, depth) -> {
+                out.write(node, 0);
+                return true;
+            });
+            out.flush();
+        }
+    }
+
+    // This directory's own line, without its children
+    public void printSummary() {
+        System.out.println(ListingWriter.appendDetails(this, getLastModified().toString(), new StringBuilder()));
+    }
+
+    // Snapshot of the children in insertion order
+    public List<TreeNode> getChildren() {
+        List<TreeNode> result = new ArrayList<>(getChildCount());
+        for (TreeNode child : children()) {
+            result.add(child);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,162 @@
+package com.eysoftpro.filesystem;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Builds a detached DirectoryNode tree from a real directory on disk. Each directory is listed by
+// one ForkJoin task, which reads its entries' attributes in one call each and forks a task per
+// subdirectory without waiting for it, so idle workers steal whole subtrees and deep trees never
+// nest tasks on the call stack. The tasks are CountedCompleters: the scan is over when every forked
+// task has completed. Aggregates are then computed in one bottom-up pass.
+// Symbolic links are not followed; other non-regular files are skipped. Unreadable directories
+// are counted as errors and imported empty. Memory is bounded by maxEntries: once that many entries
+// are read, scanning stops and the result is marked truncated.
+public class DiskScanner {
+    public static final long DEFAULT_MAX_ENTRIES = 10_000_000;
+
+    private final int parallelism;
+    private final long maxEntries;
+
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicBoolean truncated = new AtomicBoolean();
+    private final ConcurrentLinkedQueue<ScanTask> scanned = new ConcurrentLinkedQueue<>();
+    private long elapsedNanos;
+
+    public DiskScanner() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_ENTRIES);
+    }
+
+    public DiskScanner(int parallelism, long maxEntries) {
+        if (parallelism < 1 || maxEntries < 1) {
+            throw new IllegalArgumentException("parallelism and maxEntries must be positive");
+        }
+        this.parallelism = parallelism;
+        this.maxEntries = maxEntries;
+    }
+
+    // Scans directory into a new tree whose root is named after it; every node is USER
+    public synchronized DirectoryNode scan(Path directory) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+        if (!attributes.isDirectory()) {
+            throw new IOException("Not a directory: " + directory);
+        }
+        entries.set(0);
+        errors.set(0);
+        truncated.set(false);
+        scanned.clear();
+        long start = System.nanoTime();
+
+        Path fileName = directory.getFileName();
+        DirectoryNode root = new DirectoryNode(fileName != null ? fileName.toString() : directory.toString(),
+                new Date(attributes.lastModifiedTime().toMillis()), AccessLevel.USER);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new ScanTask(null, directory, root, 0));
+        } finally {
+            pool.shutdown();
+        }
+
+        // Deepest first, so every directory is recomputed after all of its subdirectories
+        List<ScanTask> directories = new ArrayList<>(scanned);
+        scanned.clear();
+        directories.sort(Comparator.comparingInt((ScanTask task) -> task.depth).reversed());
+        for (ScanTask task : directories) {
+            task.node.recalculateProperties();
+        }
+        elapsedNanos = System.nanoTime() - start;
+        return root;
+    }
+
+    // Statistics of the last scan
+    public long getEntries() {
+        return Math.min(entries.get(), maxEntries);
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public boolean isTruncated() {
+        return truncated.get();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getEntriesPerSecond() {
+        return elapsedNanos == 0 ? 0 : getEntries() * 1e9 / elapsedNanos;
+    }
+
+    private final class ScanTask extends CountedCompleter<Void> {
+        private final Path path;
+        private final DirectoryNode node;
+        private final int depth;
+
+        ScanTask(ScanTask parent, Path path, DirectoryNode node, int depth) {
+            super(parent);
+            this.path = path;
+            this.node = node;
+            this.depth = depth;
+        }
+
+        @Override
+        public void compute() {
+            scanned.add(this);
+            list();
+            tryComplete();
+        }
+
+        private void list() {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path entry : stream) {
+                    if (truncated.get()) {
+                        return;
+                    }
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        errors.incrementAndGet(); // deleted or unreadable since it was listed
+                        continue;
+                    }
+                    if (!attributes.isDirectory() && !attributes.isRegularFile()) {
+                        continue;
+                    }
+                    if (entries.incrementAndGet() > maxEntries) {
+                        truncated.set(true);
+                        return;
+                    }
+                    String name = entry.getFileName().toString();
+                    Date lastModified = new Date(attributes.lastModifiedTime().toMillis());
+                    if (attributes.isDirectory()) {
+                        DirectoryNode child = new DirectoryNode(name, lastModified, AccessLevel.USER);
+                        node.attachChild(child);
+                        addToPendingCount(1);
+                        new ScanTask(this, entry, child, depth + 1).fork();
+                    } else {
+                        int dot = name.lastIndexOf('.');
+                        node.attachChild(new FileNode(name, dot >= 0 ? name.substring(dot + 1) : "", lastModified, attributes.size(), AccessLevel.USER));
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+}
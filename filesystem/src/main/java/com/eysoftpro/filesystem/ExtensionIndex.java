@@ -0,0 +1,42 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Case-insensitive extension -> files index behind FileSystem.searchByExtension
+public class ExtensionIndex implements FileSystemListener {
+    private final ConcurrentHashMap<String, Set<FileNode>> byExtension = new ConcurrentHashMap<>();
+
+    @Override
+    public void nodeAdded(TreeNode node) {
+        TreeTraversal.forEach(node, n -> {
+            if (n instanceof FileNode) {
+                FileNode file = (FileNode) n;
+                byExtension.compute(NameIndex.foldCase(file.getExtension()), (key, files) -> {
+                    if (files == null) {
+                        files = ConcurrentHashMap.newKeySet();
+                    }
+                    files.add(file);
+                    return files;
+                });
+            }
+        });
+    }
+
+    @Override
+    public void nodeRemoved(DirectoryNode parent, TreeNode node) {
+        TreeTraversal.forEach(node, n -> {
+            if (n instanceof FileNode) {
+                byExtension.computeIfPresent(NameIndex.foldCase(((FileNode) n).getExtension()),
+                        (key, files) -> files.remove(n) && files.isEmpty() ? null : files);
+            }
+        });
+    }
+
+    public Collection<FileNode> find(String extension) {
+        Set<FileNode> files = byExtension.get(NameIndex.foldCase(extension));
+        return files != null ? Collections.unmodifiableSet(files) : Collections.emptySet();
+    }
+}
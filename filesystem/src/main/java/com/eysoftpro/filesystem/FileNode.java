@@ -0,0 +1,29 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Date;
+
+public class FileNode extends TreeNode{
+    private String extension; // File extension like "txt", "pdf", etc.
+
+    public FileNode(String name, String extension, Date lastModified, long size, AccessLevel accessLevel) {
+        this(name, lastModified, size, accessLevel, extension.intern()); // A handful of distinct extensions is shared by millions of files
+    }
+
+    // For callers whose extensions are interned already, so the lookup is not paid for every node
+    FileNode(String name, Date lastModified, long size, AccessLevel accessLevel, String internedExtension) {
+        super(name, lastModified, size, accessLevel);
+        this.extension = internedExtension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+    @Override
+    public void printDetails() {
+        System.out.println(ListingWriter.appendDetails(this, getLastModified().toString(), new StringBuilder()));
+    }
+    @Override
+    public StringBuilder appendFullPath(StringBuilder out) {
+        return appendNamePath(out).append('.').append(extension);
+    }
+}
@@ -0,0 +1,1299 @@
+package com.eysoftpro.filesystem;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import com.eysoftpro.filesystem.FileSystemMetrics.Operation;
+
+// Safe for concurrent use. Reads (find, search, list, display) take no locks. A writer write-locks
+// the directories it changes and read-locks their ancestors, so writers in disjoint subtrees run in
+// parallel while nobody can remove a directory that another writer is working below.
+public class FileSystem {
+    private static final int PATH_CACHE_SIZE = 1024;
+    private static final int LOCK_STRIPES = 64;
+    private static final long JOURNAL_COMPACT_BYTES = 16L << 20;
+    // Only asked isEnabled(), never committed, so one instance serves every thread
+    private static final SlowOperationEvent SLOW_OPERATIONS = new SlowOperationEvent();
+
+    private DirectoryNode root;
+    private final PathCache pathCache = new PathCache(PATH_CACHE_SIZE);
+    private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[LOCK_STRIPES];
+    private final List<FileSystemListener> listeners = new CopyOnWriteArrayList<>();
+    private final NameIndex nameIndex = new NameIndex();
+    private final ExtensionIndex extensionIndex = new ExtensionIndex();
+    private final AttributeIndex sizeIndex = new AttributeIndex(FileNode::getSize);
+    private final AttributeIndex modifiedIndex = new AttributeIndex(file -> file.getLastModified().getTime());
+    private final UsageRollups usage = new UsageRollups();
+    private volatile FileSystemJournal journal;
+    private volatile String journalSnapshotPath;
+    private volatile long snapshotSequence; // Last journal record contained in the loaded snapshot
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private volatile FileSystemMetrics metrics; // null while metrics are disabled
+    private volatile long slowOperationNanos = 10_000_000;
+    private volatile VersionHistory versions; // null while versioning is disabled
+    private final List<LazyManifest> lazyManifests = new CopyOnWriteArrayList<>();
+
+    public FileSystem() {
+        root = new DirectoryNode("root", new Date(), AccessLevel.USER);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        addListener(nameIndex);
+        addListener(extensionIndex);
+        addListener(sizeIndex);
+        addListener(modifiedIndex);
+        addListener(usage);
+    }
+
+    // The listener first receives the current tree as one nodeAdded(root) call
+    public void addListener(FileSystemListener listener) {
+        listeners.add(listener);
+        listener.nodeAdded(root);
+    }
+
+    public void removeListener(FileSystemListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Starts recording latencies and visit counts into a fresh FileSystemMetrics and returns it
+    public FileSystemMetrics enableMetrics() {
+        FileSystemMetrics enabled = new FileSystemMetrics();
+        metrics = enabled;
+        return enabled;
+    }
+
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    // null while metrics are disabled
+    public FileSystemMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Operations taking at least this long are reported as SlowOperationEvent to JFR
+    public void setSlowOperationThreshold(long millis) {
+        slowOperationNanos = millis * 1_000_000;
+    }
+
+    // Starts keeping an immutable FileSystemVersion after every change (see VersionHistory): at
+    // most maxVersions of them, dropping those older than maxAgeMillis. Each change then also
+    // copies the directories on its path, so versioning is off until asked for.
+    public void enableVersioning(int maxVersions, long maxAgeMillis) {
+        VersionHistory history = new VersionHistory(maxVersions, maxAgeMillis);
+        List<Lock> held = lockForWrite(root); // the first version must not miss a change
+        try {
+            for (LazyManifest manifest : lazyManifests) {
+                manifest.loadAll(); // versions are built from the nodes in memory
+            }
+            disableVersioning();
+            addListener(history);
+            versions = history;
+        } finally {
+            unlock(held);
+        }
+    }
+
+    public void disableVersioning() {
+        VersionHistory history = versions;
+        if (history != null) {
+            removeListener(history);
+            versions = null;
+        }
+    }
+
+    // The tree as of the last change; null while versioning is disabled. Unlike getRoot, the result
+    // never changes, so it can be read at leisure without seeing a half-applied change.
+    public FileSystemVersion getVersion() {
+        VersionHistory history = versions;
+        return history != null ? history.current() : null;
+    }
+
+    // null if the version was dropped already or versioning is disabled
+    public FileSystemVersion getVersion(long number) {
+        VersionHistory history = versions;
+        return history != null ? history.get(number) : null;
+    }
+
+    // The version that was current at time
+    public FileSystemVersion getVersionAt(Date time) {
+        VersionHistory history = versions;
+        return history != null ? history.at(time) : null;
+    }
+
+    // Retained versions, oldest first
+    public List<FileSystemVersion> getVersions() {
+        VersionHistory history = versions;
+        return history != null ? history.all() : Collections.emptyList();
+    }
+
+    // Nodes in the tree, root included; O(1)
+    public long getNodeCount() {
+        return root.getDescendantCount() + 1;
+    }
+
+    // Deepest level below the root; walks the whole tree
+    public int getDepth() {
+        int[] deepest = new int[1];
+        TreeTraversal.walk(root, (node, depth) -> {
+            deepest[0] = Math.max(deepest[0], depth);
+            return true;
+        });
+        return deepest[0];
+    }
+
+    // Metrics report plus the tree gauges, for printing on demand
+    public String dumpMetrics() {
+        FileSystemMetrics current = metrics;
+        return "nodes " + getNodeCount() + ", depth " + getDepth() + ", bytes " + root.getSize() + System.lineSeparator()
+                + (current != null ? current.report() : "metrics disabled" + System.lineSeparator());
+    }
+
+    // Operations are timed only while metrics are enabled or a JFR recording wants slow-operation
+    // events; otherwise start() returns 0 and the checks below cost a field read.
+    private long start() {
+        return metrics != null || SLOW_OPERATIONS.isEnabled() ? System.nanoTime() : 0;
+    }
+
+    // visited is the number of nodes the operation looked at, or -1 where that is not meaningful
+    private void finish(Operation operation, long start, String argument, long visited, boolean failed) {
+        if (start == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        FileSystemMetrics current = metrics;
+        if (current != null) {
+            current.record(operation, elapsed, visited, failed);
+        }
+        if (elapsed >= slowOperationNanos) {
+            SlowOperationEvent event = new SlowOperationEvent();
+            if (event.shouldCommit()) {
+                event.operation = operation.name();
+                event.argument = argument;
+                event.elapsed = elapsed;
+                event.visited = visited;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    private void fireAdded(TreeNode node) {
+        for (FileSystemListener listener : listeners) {
+            listener.nodeAdded(node);
+        }
+    }
+
+    // Called by LazyManifest under the directory's monitor
+    void fireLoaded(FileNode file) {
+        for (FileSystemListener listener : listeners) {
+            listener.nodeLoaded(file);
+        }
+    }
+
+    void fireUnloaded(DirectoryNode parent, FileNode file) {
+        for (FileSystemListener listener : listeners) {
+            listener.nodeUnloaded(parent, file);
+        }
+    }
+
+    private void fireRemoved(DirectoryNode parent, TreeNode node) {
+        if (node instanceof DirectoryNode) {
+            pathCache.invalidate();
+        }
+        for (FileSystemListener listener : listeners) {
+            listener.nodeRemoved(parent, node);
+        }
+    }
+public DirectoryNode getRoot(){
+        return root;
+    }
+
+    // Write-locks the given directories and read-locks every ancestor of them. Each directory maps to
+    // one lock stripe, and stripes are always taken in index order, so writers cannot deadlock.
+    private List<Lock> lockForWrite(DirectoryNode... dirs) {
+        byte[] modes = new byte[LOCK_STRIPES]; // 0 = not needed, 1 = read, 2 = write
+        for (DirectoryNode dir : dirs) {
+            modes[stripe(dir)] = 2;
+            for (DirectoryNode ancestor = dir.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+                int i = stripe(ancestor);
+                if (modes[i] == 0) modes[i] = 1;
+            }
+        }
+        List<Lock> held = new ArrayList<>();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            if (modes[i] != 0) {
+                Lock lock = modes[i] == 2 ? locks[i].writeLock() : locks[i].readLock();
+                lock.lock();
+                held.add(lock);
+            }
+        }
+        return held;
+    }
+
+    private static void unlock(List<Lock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+
+    private static int stripe(DirectoryNode dir) {
+        int h = System.identityHashCode(dir);
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    // A directory resolved before taking the locks may have been removed in the meantime
+    private boolean isAttached(DirectoryNode dir) {
+        DirectoryNode current = dir;
+        while (current != null && current != root) {
+            current = current.getParent();
+        }
+        return current == root;
+    }
+
+    public void loadFromFileSystem(String filePath) throws IOException {
+        long start = start();
+        long before = root.getDescendantCount();
+        boolean failed = true;
+        try {
+            loadManifest(filePath);
+            failed = false;
+        } finally {
+            finish(Operation.LOAD, start, filePath, root.getDescendantCount() - before, failed);
+        }
+    }
+
+    private void loadManifest(String filePath) throws IOException {
+        FileSystemLoader loader = new FileSystemLoader(root);
+        List<Lock> held = lockForWrite(root);
+        try (Reader reader = new FileReader(filePath)) {
+            loader.load(reader);
+        } catch (Exception e) {
+            throw new IOException("Parsing file system data unsuccesfull: " + e.getMessage());
+        } finally {
+            // Whatever was linked before a parse error stays in the tree, so it is indexed as well
+            for (TreeNode node : loader.getTopLevelNodes()) {
+                fireAdded(node);
+            }
+            unlock(held);
+        }
+    }
+
+    // Loads a manifest like loadFromFileSystem, but keeps only its directories in memory at first
+    // (see LazyManifest): a directory's files are read in when its children are first looked at, and
+    // a search reads in the directories holding matches. Once more than maxLoadedFiles files are in
+    // memory, readers unload the least recently used unchanged directories again. Aggregates and
+    // getUsage count every file from the start. The manifest must stay as it is while the tree is in
+    // use. Versioning and snapshots need every file in memory, so they read in the rest; with
+    // versioning enabled the manifest is loaded eagerly.
+    public void loadFromFileSystemLazily(String filePath, long maxLoadedFiles) throws IOException {
+        if (versions != null) {
+            loadFromFileSystem(filePath);
+            return;
+        }
+        long start = start();
+        long before = root.getDescendantCount();
+        boolean failed = true;
+        LazyManifest manifest = new LazyManifest(this, Paths.get(filePath), maxLoadedFiles);
+        List<Lock> held = lockForWrite(root);
+        try {
+            manifest.scan(root);
+            failed = false;
+        } catch (Exception e) {
+            throw new IOException("Parsing file system data unsuccesfull: " + e.getMessage());
+        } finally {
+            for (TreeNode node : manifest.getTopLevelNodes()) {
+                fireAdded(node);
+            }
+            usage.addFiles(manifest.getFileUsage());
+            manifest.release();
+            lazyManifests.add(manifest);
+            unlock(held);
+            finish(Operation.LOAD, start, filePath, root.getDescendantCount() - before, failed);
+        }
+    }
+
+    // Files of lazily loaded manifests that are in memory now
+    public long getLoadedFileCount() {
+        long loaded = 0;
+        for (LazyManifest manifest : lazyManifests) {
+            loaded += manifest.getLoadedFiles();
+        }
+        return loaded;
+    }
+
+    // Unloads directories of lazily loaded manifests that are over their budget. Only called by
+    // readers, which hold no locks, since each unload takes the directory's write lock. Readers call
+    // it before they read anything in, so the nodes they return stay attached until the next read.
+    private void evictColdDirectories() {
+        for (LazyManifest manifest : lazyManifests) {
+            LazyDirectoryNode victim;
+            while (versions == null && (victim = manifest.nextVictim()) != null) {
+                List<Lock> held = lockForWrite(victim);
+                try {
+                    manifest.unload(victim, isAttached(victim) && versions == null);
+                } finally {
+                    unlock(held);
+                }
+            }
+        }
+    }
+
+    // Before an index search: reads in the lazily loaded directories with files the search can find.
+    // mayHold rules directories out from their summaries, without reading them.
+    private void loadMatching(Predicate<? super LazyDirectoryNode> mayHold, Predicate<? super FileNode> predicate) {
+        evictColdDirectories();
+        for (LazyManifest manifest : lazyManifests) {
+            manifest.loadMatching(mayHold, predicate);
+        }
+    }
+
+    // Scans a directory on disk (see DiskScanner) and adds it under path as one new directory named
+    // after it. The scan runs without locks; only linking the finished tree takes the parent's lock.
+    // The import is not journaled record by record: with a journal open, a checkpoint follows instead.
+    public long importFromDisk(String path, String diskDirectory, DiskScanner scanner) throws IOException, FileSystemException {
+        long start = start();
+        long imported = 0;
+        boolean failed = true;
+        try {
+            imported = importDirectory(path, diskDirectory, scanner);
+            failed = false;
+        } finally {
+            finish(Operation.LOAD, start, diskDirectory, imported, failed);
+        }
+        return imported;
+    }
+
+    private long importDirectory(String path, String diskDirectory, DiskScanner scanner) throws IOException, FileSystemException {
+        DirectoryNode tree = scanner.scan(Paths.get(diskDirectory));
+        DirectoryNode parent = findDirectory(path);
+        if (parent == null) {
+            throw new InvalidPathException("Path not found: " + path);
+        }
+        List<Lock> held = lockForWrite(parent);
+        try {
+            if (!isAttached(parent)) {
+                throw new InvalidPathException("Path not found: " + path);
+            }
+            if (parent.getAccessLevel() != AccessLevel.USER) {
+                throw new AccessViolationException("Cannot add directory. Parent directory access level is SYSTEM.");
+            }
+            if (!parent.attachChild(tree)) {
+                throw new FileSystemException("Directory already exists: " + tree.getName() + " in path " + path);
+            }
+            parent.recalculateAfterBatch();
+            fireAdded(tree);
+        } finally {
+            unlock(held);
+        }
+        if (journal != null) {
+            checkpoint();
+        }
+        return tree.getDescendantCount() + 1;
+    }
+
+    // Writes the whole tree, aggregates included, to a binary snapshot (see FileSystemSnapshot)
+    public void saveSnapshot(String filePath) throws IOException {
+        List<Lock> held = lockForWrite(root); // keeps writers out, so the image is consistent
+        try {
+            FileSystemJournal current = journal;
+            FileSystemSnapshot.save(root, Paths.get(filePath), current != null ? current.lastSequence() : snapshotSequence);
+        } finally {
+            unlock(held);
+        }
+    }
+
+    // Adds the contents of a snapshot under the root, like loadFromFileSystem does for a text manifest
+    public void loadSnapshot(String filePath) throws IOException {
+        long start = start();
+        long before = root.getDescendantCount();
+        boolean failed = true;
+        try {
+            loadSnapshotFile(filePath);
+            failed = false;
+        } finally {
+            finish(Operation.LOAD, start, filePath, root.getDescendantCount() - before, failed);
+        }
+    }
+
+    // A snapshot that fails part way leaves nothing behind, so the caller can load something else
+    private void loadSnapshotFile(String filePath) throws IOException {
+        List<Lock> held = lockForWrite(root);
+        List<TreeNode> topLevel = new ArrayList<>();
+        boolean loaded = false;
+        try {
+            snapshotSequence = FileSystemSnapshot.load(Paths.get(filePath), root, topLevel);
+            loaded = true;
+        } catch (RuntimeException e) {
+            throw new IOException("Loading snapshot unsuccessful: " + e.getMessage());
+        } finally {
+            if (!loaded) {
+                for (TreeNode node : topLevel) {
+                    root.detachChild(node);
+                }
+                topLevel.clear();
+            }
+            root.recalculateProperties();
+            for (TreeNode node : topLevel) {
+                fireAdded(node);
+            }
+            unlock(held);
+        }
+    }
+
+    // Makes mutations durable. The journal's records newer than the loaded snapshot are replayed
+    // first; from then on every change is appended to it, and the calling thread waits until its
+    // record is on disk. Once the journal grows past JOURNAL_COMPACT_BYTES the tree is written to
+    // snapshotPath and the journal starts over.
+    //
+    // Replay stops at the first record that cannot be applied, so the tree holds exactly the records
+    // before it. The journal is cut off there, as at a corrupt record, and the failure is thrown: the
+    // records dropped with it had been acknowledged, and the journal is not opened.
+    public void openJournal(String journalPath, String snapshotPath) throws IOException {
+        if (journal != null) {
+            throw new IOException("A journal is already open");
+        }
+        // Read in full first, which compaction keeps small. Consecutive records under the same parent
+        // are applied together. Access levels were checked when the records were written, and are not
+        // checked again: a batch checks them once per directory, so re-checking record by record
+        // could reject what the batch accepted.
+        Path path = Paths.get(journalPath);
+        List<FileSystemJournal.Record> records = new ArrayList<>();
+        long last = FileSystemJournal.replay(path, snapshotSequence, records::add);
+        int from = 0;
+        for (int i = 1; i <= records.size(); i++) {
+            if (i == records.size() || !records.get(i).path.equals(records.get(from).path)) {
+                replay(path, records.subList(from, i));
+                from = i;
+            }
+        }
+        journalSnapshotPath = snapshotPath;
+        journal = new FileSystemJournal(path, Math.max(last, snapshotSequence));
+    }
+
+    private void replay(Path journalPath, List<FileSystemJournal.Record> run) throws IOException {
+        FileSystemException[] errors = new FileSystemException[run.size()];
+        List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < run.size(); i++) {
+            all.add(i);
+        }
+        applyGroup(run.get(0).path, run, all, errors, false, true);
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] != null) {
+                FileSystemJournal.truncate(journalPath, run.get(i).offset);
+                throw new IOException("Journal could not be replayed: " + errors[i].getMessage()
+                        + ". The journal was cut off before that record.");
+            }
+        }
+    }
+
+    public void closeJournal() throws IOException {
+        FileSystemJournal current = journal;
+        journal = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    // Writes the snapshot and empties the journal. The journal is only emptied once the snapshot and
+    // its directory entry are on disk (see FileSystemSnapshot.save). The snapshot records the last
+    // journal sequence it contains, so a crash between the two steps only leaves records that replay
+    // will skip.
+    public void checkpoint() throws IOException {
+        FileSystemJournal current = journal;
+        if (current == null) {
+            throw new IOException("No journal is open");
+        }
+        List<Lock> held = lockForWrite(root);
+        try {
+            FileSystemSnapshot.save(root, Paths.get(journalSnapshotPath), current.lastSequence());
+            current.reset();
+        } finally {
+            unlock(held);
+        }
+    }
+
+    // Called under the writer's locks, so records are in the same order as the changes they describe
+    private long record(FileSystemJournal.Record record) {
+        FileSystemJournal current = journal;
+        return current != null ? current.append(record) : 0;
+    }
+
+    // Called after the locks are released; concurrent writers share one write and fsync
+    private void commit(long sequence) throws FileSystemException {
+        FileSystemJournal current = journal;
+        if (sequence == 0 || current == null) {
+            return;
+        }
+        try {
+            current.sync(sequence);
+            if (current.size() > JOURNAL_COMPACT_BYTES && compacting.compareAndSet(false, true)) {
+                try {
+                    checkpoint();
+                } finally {
+                    compacting.set(false);
+                }
+            }
+        } catch (IOException e) {
+            throw new FileSystemException("Change was applied but not saved: " + e.getMessage());
+        }
+    }
+
+    // Applies many changes with one path lookup, one access check and one aggregate update per parent
+    // directory. Operations are grouped by their parent path: groups run in the order each path first
+    // appears in the batch, and operations within a group in batch order. Returns one entry per
+    // operation, null where it succeeded and the exception otherwise; a failed operation does not stop
+    // the others. The whole batch is synced to the journal once, at the end.
+    public List<FileSystemException> apply(FileSystemBatch batch) {
+        long start = start();
+        List<FileSystemException> errors = applyBatch(batch, true);
+        if (start != 0) {
+            finish(Operation.BATCH, start, batch.size() + " operations", batch.size(), errors.stream().anyMatch(e -> e != null));
+        }
+        return errors;
+    }
+
+    // Like apply, but without access checks: the batch mirrors changes already made to the source the
+    // tree was loaded from (see FileSystemWatcher), as journal replay does
+    List<FileSystemException> applyRefresh(FileSystemBatch batch) {
+        long start = start();
+        List<FileSystemException> errors = applyBatch(batch, false);
+        if (start != 0) {
+            finish(Operation.BATCH, start, "refresh of " + batch.size() + " operations", batch.size(), errors.stream().anyMatch(e -> e != null));
+        }
+        return errors;
+    }
+
+    private List<FileSystemException> applyBatch(FileSystemBatch batch, boolean checkAccess) {
+        List<FileSystemJournal.Record> operations = batch.operations;
+        FileSystemException[] errors = new FileSystemException[operations.size()];
+        Map<String, List<Integer>> byParent = new LinkedHashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            byParent.computeIfAbsent(operations.get(i).path, path -> new ArrayList<>()).add(i);
+        }
+        long sequence = 0;
+        for (Map.Entry<String, List<Integer>> group : byParent.entrySet()) {
+            sequence = Math.max(sequence, applyGroup(group.getKey(), operations, group.getValue(), errors, checkAccess, false));
+        }
+        try {
+            commit(sequence);
+        } catch (FileSystemException e) {
+            for (int i = 0; i < errors.length; i++) {
+                if (errors[i] == null) {
+                    errors[i] = e;
+                }
+            }
+        }
+        return Arrays.asList(errors);
+    }
+
+    // Applies operations[i] for each i in indexes under one parent, with links changed directly and
+    // the parent's aggregates recomputed once at the end. With stopAtFailure, the operations after the
+    // first failed one are not applied. Returns the last journal sequence written.
+    private long applyGroup(String path, List<FileSystemJournal.Record> operations, List<Integer> indexes,
+                            FileSystemException[] errors, boolean checkAccess, boolean stopAtFailure) {
+        DirectoryNode parent = findDirectory(path);
+        if (parent == null) {
+            for (int i : indexes) {
+                errors[i] = new InvalidPathException("Path not found: " + path);
+            }
+            return 0;
+        }
+        // Directories to be removed are write-locked too, like in removeDirectory. Directories created
+        // by the group join the list, since nobody can reach them while the parent is locked.
+        Set<DirectoryNode> locked = new LinkedHashSet<>();
+        locked.add(parent);
+        for (int i : indexes) {
+            FileSystemJournal.Record op = operations.get(i);
+            DirectoryNode target = op.op == FileSystemJournal.REMOVE_DIRECTORY ? parent.getDirectory(op.name) : null;
+            if (target != null) {
+                locked.add(target);
+            }
+        }
+        long sequence = 0;
+        boolean changed = false;
+        List<Lock> held = lockForWrite(locked.toArray(new DirectoryNode[0]));
+        try {
+            if (!isAttached(parent)) {
+                for (int i : indexes) {
+                    errors[i] = new InvalidPathException("Path not found: " + path);
+                }
+                return 0;
+            }
+            boolean writable = !checkAccess || parent.getAccessLevel() == AccessLevel.USER;
+            for (int i : indexes) {
+                FileSystemJournal.Record op = operations.get(i);
+                try {
+                    applyOperation(parent, op, writable, checkAccess, locked);
+                    changed = true;
+                    sequence = record(op);
+                } catch (FileSystemException e) {
+                    errors[i] = e;
+                    if (stopAtFailure) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            if (changed) {
+                parent.recalculateAfterBatch();
+            }
+            unlock(held);
+        }
+        return sequence;
+    }
+
+    private void applyOperation(DirectoryNode parent, FileSystemJournal.Record op, boolean writable, boolean checkAccess,
+                                Set<DirectoryNode> locked) throws FileSystemException {
+        switch (op.op) {
+            case FileSystemJournal.ADD_DIRECTORY -> {
+                if (!writable) {
+                    throw new AccessViolationException("Cannot add directory. Parent directory access level is SYSTEM.");
+                }
+                DirectoryNode dir = new DirectoryNode(op.name, new Date(op.lastModified), AccessLevel.parse(op.accessLevel));
+                if (!parent.attachChild(dir)) {
+                    throw new FileSystemException("Directory already exists: " + op.name + " in path " + op.path);
+                }
+                locked.add(dir);
+                fireAdded(dir);
+            }
+            case FileSystemJournal.ADD_FILE -> {
+                if (!writable) {
+                    throw new AccessViolationException("Cannot add file. Parent directory access level is SYSTEM.");
+                }
+                FileNode file = new FileNode(op.name, op.extension, new Date(op.lastModified), op.size, AccessLevel.parse(op.accessLevel));
+                if (!parent.attachChild(file)) {
+                    throw new FileSystemException("File already exists: " + op.name + " in path " + op.path);
+                }
+                fireAdded(file);
+            }
+            case FileSystemJournal.REMOVE_DIRECTORY -> {
+                DirectoryNode target = parent.getDirectory(op.name);
+                if (target == null) {
+                    throw new InvalidPathException("Directory not found: " + op.name + " in path " + op.path);
+                }
+                if (!locked.contains(target)) {
+                    throw new FileSystemException("Directory was replaced while the batch ran: " + op.name + " in path " + op.path);
+                }
+                if (checkAccess && target.getAccessLevel() != AccessLevel.USER) {
+                    throw new AccessViolationException("Cannot delete directory. Directory access level is SYSTEM: " + op.name);
+                }
+                if (checkAccess && containsSystemLevelContent(target)) {
+                    throw new AccessViolationException("Cannot delete directory: " + op.name + ". It contains SYSTEM-level files or subdirectories.");
+                }
+                parent.detachChild(target);
+                fireRemoved(parent, target);
+            }
+            case FileSystemJournal.REMOVE_FILE -> {
+                FileNode target = parent.getFile(op.name);
+                if (target == null) {
+                    throw new InvalidPathException("File not found: " + op.name + " in path " + op.path);
+                }
+                if (checkAccess && target.getAccessLevel() != AccessLevel.USER) {
+                    throw new AccessViolationException("Cannot delete file. File access level is SYSTEM: " + op.name);
+                }
+                parent.detachChild(target);
+                fireRemoved(parent, target);
+            }
+            default -> throw new FileSystemException("Unknown operation " + op.op);
+        }
+    }
+
+    public void addDirectory(String path, String name, String accessLevel) throws FileSystemException {
+        long start = start();
+        boolean failed = true;
+        try {
+            addDirectoryLocked(path, name, accessLevel);
+            failed = false;
+        } finally {
+            finish(Operation.ADD, start, path, 1, failed);
+        }
+    }
+
+    private void addDirectoryLocked(String path, String name, String accessLevel) throws FileSystemException {
+        long sequence;
+        AccessLevel level = AccessLevel.parse(accessLevel);
+        DirectoryNode parent = findDirectory(path);
+        if (parent == null) {
+            throw new InvalidPathException("Path not found: " + path);
+        }
+        List<Lock> held = lockForWrite(parent);
+        try {
+            if (!isAttached(parent)) {
+                throw new InvalidPathException("Path not found: " + path);
+            }
+            if (parent.getAccessLevel() != AccessLevel.USER) {
+                throw new AccessViolationException("Cannot add directory. Parent directory access level is SYSTEM.");
+            }
+            if (parent.getDirectory(name) != null) {
+                throw new FileSystemException("Directory already exists: " + name + " in path " + path);
+            }
+
+            DirectoryNode newDir = new DirectoryNode(name, new Date(), level);
+            parent.addChild(newDir);
+            fireAdded(newDir);
+            sequence = record(FileSystemJournal.Record.addDirectory(path, name, level.name(), newDir.getLastModified().getTime()));
+        } finally {
+            unlock(held);
+        }
+        commit(sequence);
+    }
+
+    public void addFile(String path, String name, String extension, long size, String accessLevel, Date lastModified) throws FileSystemException {
+        long start = start();
+        boolean failed = true;
+        try {
+            addFileLocked(path, name, extension, size, accessLevel, lastModified);
+            failed = false;
+        } finally {
+            finish(Operation.ADD, start, path, 1, failed);
+        }
+    }
+
+    private void addFileLocked(String path, String name, String extension, long size, String accessLevel, Date lastModified) throws FileSystemException {
+        long sequence;
+        AccessLevel level = AccessLevel.parse(accessLevel);
+        DirectoryNode parent = findDirectory(path);
+        if (parent == null) {
+            throw new InvalidPathException("Path not found: " + path);
+        }
+        List<Lock> held = lockForWrite(parent);
+        try {
+            if (!isAttached(parent)) {
+                throw new InvalidPathException("Path not found: " + path);
+            }
+            if (parent.getAccessLevel() != AccessLevel.USER) {
+                throw new AccessViolationException("Cannot add file. Parent directory access level is SYSTEM.");
+            }
+            if (parent.getFile(name) != null) {
+                throw new FileSystemException("File already exists: " + name + " in path " + path);
+            }
+
+            FileNode file = new FileNode(name, extension,lastModified, size, level);
+            parent.addChild(file);
+            fireAdded(file);
+            sequence = record(FileSystemJournal.Record.addFile(path, name, extension, size, level.name(), lastModified.getTime()));
+        } finally {
+            unlock(held);
+        }
+        commit(sequence);
+    }
+    public void removeDirectory(String path, String name) throws FileSystemException {
+        long start = start();
+        boolean failed = true;
+        try {
+            removeDirectoryLocked(path, name);
+            failed = false;
+        } finally {
+            finish(Operation.REMOVE, start, path, 1, failed);
+        }
+    }
+
+    private void removeDirectoryLocked(String path, String name) throws FileSystemException {
+        // Find the parent directory
+        DirectoryNode parent = findDirectory(path);
+        if (parent == null) {
+            throw new InvalidPathException("Invalid path: " + path);
+        }
+
+        while (true) {
+            // Locate the directory to remove
+            DirectoryNode target = parent.getDirectory(name);
+            if (target == null) {
+                throw new InvalidPathException("Directory not found: " + name + " in path " + path);
+            }
+
+            // The target is write-locked too, which waits out writers working anywhere below it
+            long sequence;
+            List<Lock> held = lockForWrite(parent, target);
+            try {
+                if (!isAttached(parent)) {
+                    throw new InvalidPathException("Invalid path: " + path);
+                }
+                if (parent.getDirectory(name) != target) {
+                    continue; // replaced before the locks were taken
+                }
+
+                if (target.getAccessLevel() != AccessLevel.USER) {
+                    throw new AccessViolationException("Cannot delete directory. Directory access level is SYSTEM: " + name);
+                }
+
+                // Check if the directory contains any SYSTEM-level files or directories
+                if (containsSystemLevelContent(target)) {
+                    throw new AccessViolationException("Cannot delete directory: " + name + ". It contains SYSTEM-level files or subdirectories.");
+                }
+
+                // Remove the directory from the parent
+                parent.removeChild(target);
+                fireRemoved(parent, target);
+                sequence = record(FileSystemJournal.Record.removeDirectory(path, name));
+            } finally {
+                unlock(held);
+            }
+            commit(sequence);
+            return;
+        }
+    }
+
+    // Deletes everything below path/name that may be deleted, like rm -r that leaves protected content
+    // alone: SYSTEM nodes and the directories leading to them stay, everything else goes. Subtrees
+    // without SYSTEM content are found from the per-directory SYSTEM counters, not by scanning, and
+    // each goes in one operation; the walk only enters directories that have SYSTEM nodes below.
+    // Returns the number of nodes removed.
+    public long removeDirectoryRecursively(String path, String name) throws FileSystemException {
+        long start = start();
+        long removed = 0;
+        boolean failed = true;
+        try {
+            removed = removeRecursively(path, name);
+            failed = false;
+        } finally {
+            finish(Operation.REMOVE, start, path, removed, failed);
+        }
+        return removed;
+    }
+
+    private long removeRecursively(String path, String name) throws FileSystemException {
+        DirectoryNode parent = findDirectory(path);
+        if (parent == null) {
+            throw new InvalidPathException("Invalid path: " + path);
+        }
+        DirectoryNode target = parent.getDirectory(name);
+        if (target == null) {
+            throw new InvalidPathException("Directory not found: " + name + " in path " + path);
+        }
+        // Nothing below a SYSTEM directory may go, so refuse it the way removeDirectory does
+        if (target.getAccessLevel() != AccessLevel.USER) {
+            throw new AccessViolationException("Cannot delete directory. Directory access level is SYSTEM: " + name);
+        }
+        FileSystemBatch batch = new FileSystemBatch();
+        List<Long> nodes = new ArrayList<>(); // nodes removed by each operation
+        List<String> paths = new ArrayList<>(); // paths.get(d) = parent path of the nodes at depth d
+        paths.add(path);
+        TreeTraversal.walk(target, (node, depth) -> {
+            if (node.getAccessLevel() != AccessLevel.USER) {
+                return false; // a SYSTEM directory holds nothing but SYSTEM nodes
+            }
+            if (node instanceof FileNode) {
+                batch.removeFile(paths.get(depth), node.getName());
+                nodes.add(1L);
+                return false;
+            }
+            DirectoryNode dir = (DirectoryNode) node;
+            if (dir.getSystemDescendantCount() == 0) {
+                batch.removeDirectory(paths.get(depth), node.getName());
+                nodes.add(dir.getDescendantCount() + 1);
+                return false;
+            }
+            String parentPath = paths.get(depth);
+            paths.subList(depth + 1, paths.size()).clear();
+            paths.add(parentPath.endsWith("/") ? parentPath + node.getName() : parentPath + "/" + node.getName());
+            return true;
+        });
+        List<FileSystemException> errors = applyBatch(batch, true);
+        long removed = 0;
+        FileSystemException first = null;
+        for (int i = 0; i < errors.size(); i++) {
+            if (errors.get(i) == null) {
+                removed += nodes.get(i);
+            } else if (first == null) {
+                first = errors.get(i);
+            }
+        }
+        if (first != null) {
+            throw new FileSystemException("Removed " + removed + " nodes, but not all: " + first.getMessage());
+        }
+        return removed;
+    }
+
+    public void removeFile(String path, String name) throws FileSystemException {
+        long start = start();
+        boolean failed = true;
+        try {
+            removeFileLocked(path, name);
+            failed = false;
+        } finally {
+            finish(Operation.REMOVE, start, path, 1, failed);
+        }
+    }
+
+    private void removeFileLocked(String path, String name) throws FileSystemException {
+        long sequence;
+        DirectoryNode parent = findDirectory(path);
+        if (parent == null) {
+            throw new InvalidPathException("Invalid path: " + path);
+        }
+        List<Lock> held = lockForWrite(parent);
+        try {
+            if (!isAttached(parent)) {
+                throw new InvalidPathException("Invalid path: " + path);
+            }
+
+            FileNode target = parent.getFile(name);
+            if (target == null) {
+                throw new InvalidPathException("File not found: " + name + " in path " + path);
+            }
+
+            if (target.getAccessLevel() != AccessLevel.USER) {
+                throw new AccessViolationException("Cannot delete file. File access level is SYSTEM: " + name);
+            }
+
+            parent.removeChild(target);
+            fireRemoved(parent, target);
+            sequence = record(FileSystemJournal.Record.removeFile(path, name));
+        } finally {
+            unlock(held);
+        }
+        commit(sequence);
+    }
+
+    // O(1): every directory counts the SYSTEM nodes below it
+    private boolean containsSystemLevelContent(DirectoryNode directory) {
+        return directory.getSystemDescendantCount() > 0;
+    }
+    DirectoryNode findDirectory(String path) {
+        if (path.equals("/")) return root;
+        DirectoryNode cached = pathCache.get(path);
+        if (cached != null) return cached;
+        int generation = pathCache.generation();
+
+        DirectoryNode current = root;
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) end = path.length();
+            if (end > start) {
+                current = current.getDirectory(path.substring(start, end));
+                if (current == null) return null;
+            }
+            start = end + 1;
+        }
+        pathCache.put(path, current, generation);
+        return current;
+    }
+
+    // Both searches are answered from indexes, so they cost O(number of results), plus sorting the
+    // results by full path: the index sets have no order of their own.
+    // With a lazily loaded manifest, every search first reads in the directories holding matches;
+    // the directories' name and extension summaries tell which those are without reading the others
+    public List<TreeNode> searchByName(String name) {
+        long start = start();
+        String key = NameIndex.foldCase(name);
+        loadMatching(dir -> dir.mayHoldName(key), file -> NameIndex.foldCase(file.getName()).equals(key));
+        List<TreeNode> result = sortByPath(nameIndex.find(name));
+        finish(Operation.SEARCH, start, name, result.size(), false);
+        return result;
+    }
+
+    public List<FileNode> searchByExtension(String extension) {
+        long start = start();
+        String key = NameIndex.foldCase(extension);
+        loadMatching(dir -> dir.hasExtension(key), file -> NameIndex.foldCase(file.getExtension()).equals(key));
+        List<FileNode> result = sortByPath(extensionIndex.find(extension));
+        finish(Operation.SEARCH, start, extension, result.size(), false);
+        return result;
+    }
+
+    // Case-insensitive name patterns. The iterate* forms are lazy; the search* forms return
+    // at most limit results (all of them when limit <= 0). With a lazily loaded manifest they read
+    // every directory that is not in memory, since the directory summaries only know exact names.
+    public Iterator<TreeNode> iterateByPrefix(String prefix) {
+        String key = NameIndex.foldCase(prefix);
+        loadMatching(dir -> true, file -> NameIndex.foldCase(file.getName()).startsWith(key));
+        return nameIndex.findByPrefix(prefix);
+    }
+
+    public Iterator<TreeNode> iterateContaining(String text) {
+        String key = NameIndex.foldCase(text);
+        loadMatching(dir -> true, file -> NameIndex.foldCase(file.getName()).contains(key));
+        return nameIndex.findContaining(text);
+    }
+
+    public Iterator<TreeNode> iterateByGlob(String pattern) {
+        String glob = NameIndex.foldCase(pattern);
+        loadMatching(dir -> true, file -> NameIndex.globMatches(glob, NameIndex.foldCase(file.getName())));
+        return nameIndex.findByGlob(pattern);
+    }
+
+    public List<TreeNode> searchByPrefix(String prefix, int limit) {
+        long start = start();
+        return take(iterateByPrefix(prefix), limit, start, prefix);
+    }
+
+    public List<TreeNode> searchContaining(String text, int limit) {
+        long start = start();
+        return take(iterateContaining(text), limit, start, text);
+    }
+
+    public List<TreeNode> searchByGlob(String pattern, int limit) {
+        long start = start();
+        return take(iterateByGlob(pattern), limit, start, pattern);
+    }
+
+    // Size and date queries over files, answered from sorted indexes in O(log n + results). Ranges
+    // are inclusive; limit <= 0 means no limit.
+    public List<FileNode> searchBySize(long minSize, long maxSize, int limit) {
+        long start = start();
+        loadMatching(dir -> dir.maxFileSize >= minSize && dir.minFileSize <= maxSize,
+                file -> file.getSize() >= minSize && file.getSize() <= maxSize);
+        return take(sizeIndex.range(minSize, maxSize, false), limit, start, minSize + ".." + maxSize);
+    }
+
+    public List<FileNode> searchByLastModified(Date from, Date to, int limit) {
+        long start = start();
+        loadMatching(dir -> dir.maxFileDate >= from.getTime() && dir.minFileDate <= to.getTime(),
+                file -> !file.getLastModified().before(from) && !file.getLastModified().after(to));
+        return take(modifiedIndex.range(from.getTime(), to.getTime(), false), limit, start, from + ".." + to);
+    }
+
+    // Newest first
+    public List<FileNode> searchModifiedSince(Date since, int limit) {
+        long start = start();
+        loadMatching(dir -> dir.maxFileDate >= since.getTime(), file -> !file.getLastModified().before(since));
+        return take(modifiedIndex.range(since.getTime(), Long.MAX_VALUE, true), limit, start, "since " + since);
+    }
+
+    public List<FileNode> largestFiles(int k) {
+        long start = start();
+        evictColdDirectories();
+        for (LazyManifest manifest : lazyManifests) {
+            manifest.loadTop(k, FileNode::getSize, dir -> dir.maxFileSize, sizeIndex.descending());
+        }
+        return take(k > 0 ? sizeIndex.descending() : Collections.<FileNode>emptyIterator(), k, start, "largest files");
+    }
+
+    public List<FileNode> newestFiles(int k) {
+        long start = start();
+        evictColdDirectories();
+        for (LazyManifest manifest : lazyManifests) {
+            manifest.loadTop(k, file -> file.getLastModified().getTime(), dir -> dir.maxFileDate, modifiedIndex.descending());
+        }
+        return take(k > 0 ? modifiedIndex.descending() : Collections.<FileNode>emptyIterator(), k, start, "newest files");
+    }
+
+    // A directory is never larger than its parent, so the tree is already heap-ordered by size.
+    // A best-first walk from the root pops directories in descending size and only expands the ones
+    // it pops: the cost is O(k * fan-out * log) however big the tree is. The root holds everything,
+    // so it always comes first and counts as one of the k.
+    public List<DirectoryNode> largestDirectories(int k) {
+        long start = start();
+        evictColdDirectories();
+        List<DirectoryNode> result = new ArrayList<>();
+        PriorityQueue<DirectoryNode> frontier = new PriorityQueue<>(Comparator.comparingLong(DirectoryNode::getSize).reversed());
+        frontier.add(root);
+        long visited = 0;
+        while (result.size() < k && !frontier.isEmpty()) {
+            DirectoryNode dir = frontier.poll();
+            result.add(dir);
+            for (TreeNode child : dir.children()) {
+                visited++;
+                if (child instanceof DirectoryNode) {
+                    frontier.add((DirectoryNode) child);
+                }
+            }
+        }
+        finish(Operation.SEARCH, start, "largest directories", visited, false);
+        return result;
+    }
+
+    // Usage of the whole tree by extension, access level, depth and top-level directory, kept up to
+    // date on every change; polling it costs O(extensions + depth + top-level directories)
+    public UsageReport getUsage() {
+        return usage.report(root);
+    }
+
+    // The same breakdown for one directory, with depths counted from it, computed in one parallel pass
+    public UsageReport computeUsage(String path) throws FileSystemException {
+        long start = start();
+        evictColdDirectories();
+        DirectoryNode directory = findDirectory(path);
+        if (directory == null) {
+            throw new InvalidPathException("Directory not found: " + path);
+        }
+        UsageReport report = UsageRollups.compute(directory);
+        finish(Operation.SEARCH, start, "usage " + path, directory.getDescendantCount() + 1, false);
+        return report;
+    }
+
+    private <T extends TreeNode> List<T> take(Iterator<T> nodes, int limit, long start, String pattern) {
+        List<T> result = new ArrayList<>();
+        while (nodes.hasNext() && (limit <= 0 || result.size() < limit)) {
+            result.add(nodes.next());
+        }
+        finish(Operation.SEARCH, start, pattern, result.size(), false);
+        return result;
+    }
+
+    // Each path is built once, not once per comparison
+    private static <T extends TreeNode> List<T> sortByPath(Collection<T> nodes) {
+        Map<T, String> paths = new HashMap<>(nodes.size() * 2);
+        for (T node : nodes) {
+            paths.put(node, node.getFullPath());
+        }
+        List<T> result = new ArrayList<>(paths.keySet());
+        result.sort(Comparator.comparing(paths::get));
+        return result;
+    }
+
+    public String getPath(TreeNode node) {
+        return node.appendNamePath(new StringBuilder()).toString();
+    }
+
+    // Prints one line per child, streamed from the sibling links
+    public void listContents(String path) throws FileSystemException {
+        listContents(path, Integer.MAX_VALUE, null);
+    }
+
+    // Prints up to pageSize children, starting after resumeToken (null for the first page), and
+    // returns the token for the next page, or null after the last child
+    public String listContents(String path, int pageSize, String resumeToken) throws FileSystemException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        long start = start();
+        long printed = 0;
+        boolean failed = true;
+        try {
+            DirectoryListing listing = openListing(path, resumeToken);
+            ListingWriter out = ListingWriter.console();
+            synchronized (out) {
+                while (printed < pageSize && listing.hasNext()) {
+                    out.write(listing.next(), 0);
+                    printed++;
+                }
+                out.flush();
+            }
+            failed = false;
+            return listing.hasNext() ? listing.getResumeToken() : null;
+        } finally {
+            finish(Operation.LIST, start, path, printed, failed);
+        }
+    }
+
+    // The children of a USER directory, in insertion order
+    public List<TreeNode> getContents(String path) throws FileSystemException {
+        evictColdDirectories();
+        return userDirectory(path).getChildren();
+    }
+
+    // A cursor over the children of a USER directory, to be read a page at a time (see
+    // DirectoryListing); resumeToken is null to start at the first child
+    public DirectoryListing openListing(String path, String resumeToken) throws FileSystemException {
+        evictColdDirectories();
+        return new DirectoryListing(userDirectory(path), resumeToken);
+    }
+
+    private DirectoryNode userDirectory(String path) throws FileSystemException {
+        DirectoryNode directory = findDirectory(path);
+        if (directory == null) {
+            throw new InvalidPathException("Directory not found: " + path);
+        }
+        if (directory.getAccessLevel() != AccessLevel.USER) {
+            throw new AccessViolationException("Access denied to directory: " + path);
+        }
+        return directory;
+    }
+    private String findPath(TreeNode current, String itemName, String currentPath) {
+        // Build the current path
+        String fullPath = currentPath + "/" + current.getName();
+
+        // Check if the current node matches the itemName
+        if (current.getName().equalsIgnoreCase(itemName)) {
+            return fullPath;
+        }
+        return null;
+    }
+        public void displayPath (String itemName){
+            try {
+                String path = findPath(root, itemName, "");
+                if (path == null) {
+                    throw new Exception("Item not found: " + itemName);
+                }
+                System.out.println("Path: " + path);
+            } catch (Exception e) {
+                System.err.println("Error displaying path: " + e.getMessage());
+            }
+        }
+
+
+        public void displayFileSystem () {
+            long start = start();
+            evictColdDirectories();
+            long[] visited = new long[1];
+            ListingWriter out = ListingWriter.console();
+            synchronized (out) {
+                TreeTraversal.walk(root, (current, depth) -> {
+                    visited[0]++;
+                    out.write(current, depth); // the node's own line: the walk visits its children
+                    return true;
+                });
+                out.flush();
+            }
+            finish(Operation.LIST, start, "/", visited[0], false);
+        }
+
+    // Custom queries over the whole tree, run on the shared traversal engine. While timed, the
+    // predicate is wrapped to count the nodes it is asked about.
+    public List<TreeNode> find(Predicate<? super TreeNode> predicate) {
+        long start = start();
+        evictColdDirectories();
+        List<TreeNode> result;
+        if (start == 0) {
+            result = TreeTraversal.findAll(root, predicate);
+        } else {
+            LongAdder visited = new LongAdder();
+            result = TreeTraversal.findAll(root, node -> {
+                visited.increment();
+                return predicate.test(node);
+            });
+            finish(Operation.FIND, start, "find", visited.sum(), false);
+        }
+        return result;
+    }
+
+    // The changes that turn this tree into other (see TreeDiff). Subtrees with equal content hashes
+    // are skipped, so comparing two loads of nearly the same manifest costs about as much as the change.
+    public Iterator<TreeDiff.Change> diff(FileSystem other) {
+        evictColdDirectories();
+        other.evictColdDirectories();
+        return TreeDiff.diff(root, other.root);
+    }
+
+    public void walk(TreeTraversal.Visitor visitor) {
+        long start = start();
+        if (start == 0) {
+            TreeTraversal.walk(root, visitor);
+            return;
+        }
+        long[] visited = new long[1];
+        TreeTraversal.walk(root, (node, depth) -> {
+            visited[0]++;
+            return visitor.visit(node, depth);
+        });
+        finish(Operation.FIND, start, "walk", visited[0], false);
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.eysoftpro.filesystem;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// A list of changes for FileSystem.apply, which applies them with one lookup, access check and
+// aggregate update per parent directory
+public class FileSystemBatch {
+    final List<FileSystemJournal.Record> operations = new ArrayList<>();
+
+    public FileSystemBatch addDirectory(String path, String name, String accessLevel) {
+        return addDirectory(path, name, accessLevel, new Date());
+    }
+
+    public FileSystemBatch addDirectory(String path, String name, String accessLevel, Date lastModified) {
+        operations.add(FileSystemJournal.Record.addDirectory(path, name, accessLevel, lastModified.getTime()));
+        return this;
+    }
+
+    public FileSystemBatch addFile(String path, String name, String extension, long size, String accessLevel, Date lastModified) {
+        operations.add(FileSystemJournal.Record.addFile(path, name, extension, size, accessLevel, lastModified.getTime()));
+        return this;
+    }
+
+    public FileSystemBatch removeDirectory(String path, String name) {
+        operations.add(FileSystemJournal.Record.removeDirectory(path, name));
+        return this;
+    }
+
+    public FileSystemBatch removeFile(String path, String name) {
+        operations.add(FileSystemJournal.Record.removeFile(path, name));
+        return this;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+}
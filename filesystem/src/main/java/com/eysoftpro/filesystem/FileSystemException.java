@@ -0,0 +1,7 @@
+package com.eysoftpro.filesystem;
+
+public class FileSystemException extends Exception{
+    public FileSystemException(String message) {
+        super(message);
+    }
+}
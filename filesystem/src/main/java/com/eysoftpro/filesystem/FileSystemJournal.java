@@ -0,0 +1,288 @@
+package com.eysoftpro.filesystem;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Append-only log of FileSystem mutations, for durability between snapshots. Each record is
+//
+//   int length, int crc32, then length bytes: long sequence, byte op, op-specific fields
+//
+// Writers append under their FileSystem locks and then call sync(). The first thread to find
+// unwritten records writes all of them and forces the file once; threads arriving meanwhile wait
+// for that write and are usually covered by it (group commit). A torn record at the end of the
+// file, left by a crash, is cut off when the journal is replayed.
+public class FileSystemJournal implements Closeable {
+    static final byte ADD_DIRECTORY = 1;
+    static final byte ADD_FILE = 2;
+    static final byte REMOVE_DIRECTORY = 3;
+    static final byte REMOVE_FILE = 4;
+
+    private static final int HEADER = 8;
+
+    public interface RecordHandler {
+        void apply(Record record) throws FileSystemException;
+    }
+
+    public static final class Record {
+        final byte op;
+        final String path;
+        final String name;
+        final String extension;
+        final long size;
+        final String accessLevel;
+        final long lastModified;
+        long offset = -1; // Where the record starts in the journal file; set by replay
+
+        private Record(byte op, String path, String name, String extension, long size, String accessLevel, long lastModified) {
+            this.op = op;
+            this.path = path;
+            this.name = name;
+            this.extension = extension;
+            this.size = size;
+            this.accessLevel = accessLevel;
+            this.lastModified = lastModified;
+        }
+
+        static Record addDirectory(String path, String name, String accessLevel, long created) {
+            return new Record(ADD_DIRECTORY, path, name, null, 0, accessLevel, created);
+        }
+
+        static Record addFile(String path, String name, String extension, long size, String accessLevel, long lastModified) {
+            return new Record(ADD_FILE, path, name, extension, size, accessLevel, lastModified);
+        }
+
+        static Record removeDirectory(String path, String name) {
+            return new Record(REMOVE_DIRECTORY, path, name, null, 0, null, 0);
+        }
+
+        static Record removeFile(String path, String name) {
+            return new Record(REMOVE_FILE, path, name, null, 0, null, 0);
+        }
+    }
+
+    private final FileChannel channel;
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private final DataOutputStream encoder = new DataOutputStream(encoded);
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16); // Appended, not yet written
+    private ByteBuffer writing = ByteBuffer.allocate(1 << 16); // Owned by the thread writing a batch
+    private long appended;  // Sequence of the last appended record
+    private long durable;   // Sequence of the last record known to be on disk
+    private boolean flushing;
+    private IOException failure;
+    private long size;
+
+    // lastSequence is where numbering continues, normally the last record replayed
+    public FileSystemJournal(Path path, long lastSequence) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.size = channel.size();
+        this.channel.position(size);
+        this.appended = lastSequence;
+        this.durable = lastSequence;
+    }
+
+    public synchronized long lastSequence() {
+        return appended;
+    }
+
+    // Bytes in the file, including appended records that are still being written
+    public synchronized long size() {
+        return size + pending.position();
+    }
+
+    // Returns the record's sequence, to be passed to sync()
+    public synchronized long append(Record record) {
+        long sequence = ++appended;
+        encoded.reset();
+        try {
+            encoder.writeLong(sequence);
+            encoder.writeByte(record.op);
+            encoder.writeUTF(record.path);
+            encoder.writeUTF(record.name);
+            if (record.op == ADD_DIRECTORY || record.op == ADD_FILE) {
+                encoder.writeUTF(record.accessLevel);
+                encoder.writeLong(record.lastModified);
+            }
+            if (record.op == ADD_FILE) {
+                encoder.writeUTF(record.extension);
+                encoder.writeLong(record.size);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream does not throw
+        }
+        crc.reset();
+        crc.update(encoded.toByteArray());
+        int length = encoded.size();
+        if (pending.remaining() < HEADER + length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER + length));
+            pending.flip();
+            pending = larger.put(pending);
+        }
+        pending.putInt(length).putInt((int) crc.getValue()).put(encoded.toByteArray());
+        return sequence;
+    }
+
+    // Returns once the record with this sequence is on disk
+    public void sync(long sequence) throws IOException {
+        ByteBuffer batch;
+        long upTo;
+        synchronized (this) {
+            while (durable < sequence && flushing && failure == null) {
+                waitUninterruptibly();
+            }
+            if (failure != null) {
+                throw new IOException("Journal is unusable after an earlier error", failure);
+            }
+            if (durable >= sequence) {
+                return;
+            }
+            flushing = true;
+            batch = pending;
+            pending = writing;
+            writing = batch;
+            upTo = appended;
+        }
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (this) {
+            flushing = false;
+            if (error == null) {
+                size += batch.limit();
+                durable = Math.max(durable, upTo);
+            } else {
+                failure = error;
+            }
+            batch.clear();
+            notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // Drops every record; the caller has just saved a snapshot that contains all of them
+    public synchronized void reset() throws IOException {
+        while (flushing) {
+            waitUninterruptibly();
+        }
+        pending.clear();
+        channel.truncate(0);
+        channel.force(true);
+        size = 0;
+        durable = appended;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        while (flushing) {
+            waitUninterruptibly();
+        }
+        channel.close();
+    }
+
+    private void waitUninterruptibly() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Applies the records after afterSequence in order and returns the last sequence in the file
+    // (afterSequence if there is none). An incomplete or corrupt record ends the journal; it and
+    // anything after it are truncated away.
+    public static long replay(Path path, long afterSequence, RecordHandler handler) throws IOException {
+        if (!Files.exists(path)) {
+            return afterSequence;
+        }
+        long last = afterSequence;
+        long valid = 0;
+        long offset = 0;
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length < 9) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    offset = valid;
+                    valid += HEADER + length;
+                } catch (EOFException e) {
+                    break;
+                }
+                DataInputStream fields = new DataInputStream(new ByteArrayInputStream(payload));
+                long sequence = fields.readLong();
+                byte op = fields.readByte();
+                String recordPath = fields.readUTF();
+                String name = fields.readUTF();
+                String accessLevel = null;
+                String extension = null;
+                long lastModified = 0;
+                long size = 0;
+                if (op == ADD_DIRECTORY || op == ADD_FILE) {
+                    accessLevel = fields.readUTF();
+                    lastModified = fields.readLong();
+                }
+                if (op == ADD_FILE) {
+                    extension = fields.readUTF();
+                    size = fields.readLong();
+                }
+                last = Math.max(last, sequence);
+                if (sequence <= afterSequence) {
+                    continue; // already in the snapshot
+                }
+                Record record = new Record(op, recordPath, name, extension, size, accessLevel, lastModified);
+                record.offset = offset;
+                try {
+                    handler.apply(record);
+                } catch (FileSystemException e) {
+                    throw new IOException("Journal record " + sequence + " could not be replayed: " + e.getMessage());
+                }
+            }
+        }
+        truncate(path, valid);
+        return last;
+    }
+
+    // Cuts the file off after length bytes, for good
+    static void truncate(Path path, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (channel.size() > length) {
+                channel.truncate(length);
+                channel.force(true);
+            }
+        }
+    }
+}
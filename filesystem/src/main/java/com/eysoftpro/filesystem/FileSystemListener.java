@@ -0,0 +1,22 @@
+package com.eysoftpro.filesystem;
+
+// Notified by FileSystem after a subtree is linked into or unlinked from the tree. Calls come from
+// writer threads, concurrently for disjoint subtrees, so implementations must be thread-safe.
+public interface FileSystemListener {
+    // node and everything below it are now part of the tree
+    void nodeAdded(TreeNode node);
+
+    // node and everything below it were removed from parent
+    void nodeRemoved(DirectoryNode parent, TreeNode node);
+
+    // file was read into memory from a lazily loaded manifest (see LazyManifest). It was part of the
+    // tree before, and the directory aggregates already counted it.
+    default void nodeLoaded(FileNode file) {
+        nodeAdded(file);
+    }
+
+    // file was dropped from memory again; it is still part of the tree
+    default void nodeUnloaded(DirectoryNode parent, FileNode file) {
+        nodeRemoved(parent, file);
+    }
+}
@@ -0,0 +1,400 @@
+package com.eysoftpro.filesystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+// Streams a myfiles.txt manifest into a directory tree in one linear pass.
+// Each line is one entry, indented with tabs by its depth: "\name" is a directory and
+// "name##d.M.yyyy##size##USER|SYSTEM" is a file. A leading "\root" line stands for the root itself,
+// whatever its name. Parsed entries go to a Sink, which builds DirectoryNode trees by default.
+public class FileSystemLoader {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int DATE_CACHE_SIZE = 1024;
+
+    // Receives entries in manifest order. A directory handle is whatever directory() returned for it.
+    public interface Sink {
+        Object root();
+
+        // Returns null if the parent already has a directory with this name
+        Object directory(Object parent, String name, long lastModified);
+
+        // Returns false if the parent already has a file with this name
+        boolean file(Object parent, String name, long lastModified, long size, AccessLevel accessLevel);
+
+        // Called once after the last entry, to compute directory aggregates; also when the load fails
+        // part way, for the entries passed in before the error
+        void finish();
+
+        // Called before each line by load(InputStream): the line's first byte and the byte after
+        // its line break
+        default void position(long lineStart, long lineEnd) {
+        }
+    }
+
+    private final Sink sink;
+    private final NodeSink nodeSink;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final long loadTime = System.currentTimeMillis();
+
+    // Open directories by level; levels[0] is the root
+    private Object[] levels = new Object[16];
+    private int deepest;
+    private boolean rootLine;
+    private boolean firstEntry = true;
+
+    // Reused for every line so parsing does not allocate until a node is created
+    private char[] line = new char[256];
+    private byte[] lineBytes = new byte[256]; // load(InputStream) only, before decoding
+    private int lineLength;
+    private int lineNumber;
+    private int pos;
+
+    // Inventories reuse few distinct dates, so local midnights are cached by their yyyymmdd key
+    private final int[] dateKeys = new int[DATE_CACHE_SIZE];
+    private final long[] dateMillis = new long[DATE_CACHE_SIZE];
+
+    public FileSystemLoader(DirectoryNode root) {
+        this(new NodeSink(root));
+    }
+
+    public FileSystemLoader(Sink sink) {
+        this.sink = sink;
+        this.nodeSink = sink instanceof NodeSink ? (NodeSink) sink : null;
+        this.levels[0] = sink.root();
+    }
+
+    public void load(Reader in) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int n;
+        try {
+            while ((n = in.read(buffer)) != -1) {
+                int start = 0;
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] == '\n') {
+                        appendToLine(buffer, start, i - start);
+                        parseLine();
+                        start = i + 1;
+                    }
+                }
+                appendToLine(buffer, start, n - start);
+            }
+            if (lineLength > 0) {
+                parseLine();
+            }
+        } finally {
+            sink.finish(); // also after an error: what was linked by then stays and needs aggregates
+        }
+    }
+
+    // Like load(Reader) for UTF-8 input, also reporting where each line is in the input
+    public void load(InputStream in) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long offset = 0; // of buffer[0] in the input
+        long lineStart = 0;
+        int byteLength = 0;
+        int n;
+        try {
+            while ((n = in.read(buffer)) != -1) {
+                int start = 0;
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] == '\n') {
+                        byteLength = appendBytes(byteLength, buffer, start, i - start);
+                        decodeLine(byteLength);
+                        byteLength = 0;
+                        sink.position(lineStart, offset + i + 1);
+                        lineStart = offset + i + 1;
+                        parseLine();
+                        start = i + 1;
+                    }
+                }
+                byteLength = appendBytes(byteLength, buffer, start, n - start);
+                offset += n;
+            }
+            if (byteLength > 0) {
+                decodeLine(byteLength);
+                sink.position(lineStart, offset);
+                parseLine();
+            }
+        } finally {
+            sink.finish();
+        }
+    }
+
+    // Parses lines cut out of a manifest that are all files of parent, the directory open at level
+    // when the whole manifest was parsed (see LazyManifest). hadRootLine is hasRootLine() of that parse.
+    void loadBelow(Object parent, int level, boolean hadRootLine, InputStream in) throws IOException {
+        if (level >= levels.length) {
+            levels = Arrays.copyOf(levels, level + 1);
+        }
+        levels[level] = parent;
+        deepest = level;
+        rootLine = hadRootLine;
+        firstEntry = false;
+        load(in);
+    }
+
+    // Whether the manifest started with a line standing for the root, which shifts every level by one
+    boolean hasRootLine() {
+        return rootLine;
+    }
+
+    // Subtrees linked directly under the root by the last load into a DirectoryNode
+    public List<TreeNode> getTopLevelNodes() {
+        return nodeSink != null ? nodeSink.topLevel : Collections.emptyList();
+    }
+
+    private void appendToLine(char[] buffer, int from, int length) {
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(buffer, from, line, lineLength, length);
+        lineLength += length;
+    }
+
+    private int appendBytes(int byteLength, byte[] buffer, int from, int length) {
+        if (byteLength + length > lineBytes.length) {
+            lineBytes = Arrays.copyOf(lineBytes, Math.max(lineBytes.length * 2, byteLength + length));
+        }
+        System.arraycopy(buffer, from, lineBytes, byteLength, length);
+        return byteLength + length;
+    }
+
+    // Decodes lineBytes into line. ASCII, the common case, is copied over without a String.
+    private void decodeLine(int byteLength) {
+        int i = 0;
+        while (i < byteLength && lineBytes[i] >= 0) i++;
+        if (i == byteLength) {
+            ensureLineCapacity(byteLength);
+            for (i = 0; i < byteLength; i++) {
+                line[i] = (char) lineBytes[i];
+            }
+            lineLength = byteLength;
+        } else {
+            String decoded = new String(lineBytes, 0, byteLength, StandardCharsets.UTF_8);
+            ensureLineCapacity(decoded.length());
+            decoded.getChars(0, decoded.length(), line, 0);
+            lineLength = decoded.length();
+        }
+    }
+
+    private void ensureLineCapacity(int length) {
+        if (length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, length));
+        }
+    }
+
+    private void parseLine() throws IOException {
+        lineNumber++;
+        int end = lineLength;
+        lineLength = 0;
+        while (end > 0 && line[end - 1] <= ' ') end--; // also drops the '\r' of CRLF files
+        int depth = 0;
+        while (depth < end && line[depth] == '\t') depth++;
+        int start = skipBlanks(depth, end);
+        if (start == end) return; // blank line
+
+        boolean directory = line[start] == '\\';
+        if (firstEntry && directory && depth == 0) {
+            firstEntry = false;
+            rootLine = true;
+            text(start + 1, end, "directory name");
+            return;
+        }
+        firstEntry = false;
+
+        int parentLevel = rootLine ? depth - 1 : depth;
+        if (parentLevel < 0) {
+            throw error("entry is not indented below the root directory");
+        }
+        if (parentLevel > deepest) {
+            throw error("indentation skips a level");
+        }
+        Object parent = levels[parentLevel];
+
+        if (directory) {
+            String name = text(start + 1, end, "directory name");
+            Object dir = sink.directory(parent, name, loadTime);
+            if (dir == null) {
+                throw error("duplicate directory " + name);
+            }
+            deepest = parentLevel + 1;
+            if (deepest == levels.length) {
+                levels = Arrays.copyOf(levels, levels.length * 2);
+            }
+            levels[deepest] = dir;
+        } else {
+            parseFile(parent, start, end);
+            deepest = parentLevel; // a deeper line after a file would have no directory to belong to
+        }
+    }
+
+    private void parseFile(Object parent, int start, int end) throws IOException {
+        int nameEnd = separator(start, end);
+        int dateEnd = separator(nameEnd + 2, end);
+        int sizeEnd = separator(dateEnd + 2, end);
+        long lastModified = parseDate(nameEnd + 2, dateEnd);
+        long size = parseNumber(skipBlanks(dateEnd + 2, sizeEnd), trimEnd(dateEnd + 2, sizeEnd), "size");
+        AccessLevel accessLevel = accessLevel(skipBlanks(sizeEnd + 2, end), end);
+        String name = text(start, nameEnd, "file name");
+        if (!sink.file(parent, name, lastModified, size, accessLevel)) {
+            throw error("duplicate file " + name);
+        }
+    }
+
+    private int separator(int from, int end) throws IOException {
+        for (int i = from; i + 1 < end; i++) {
+            if (line[i] == '#' && line[i + 1] == '#') {
+                return i;
+            }
+        }
+        throw error("expected name##date##size##access");
+    }
+
+    private long parseDate(int from, int to) throws IOException {
+        pos = skipBlanks(from, to);
+        to = trimEnd(pos, to);
+        int day = (int) parseNumber(pos, field(to, '.'), "day");
+        int month = (int) parseNumber(pos, field(to, '.'), "month");
+        int year = (int) parseNumber(pos, to, "year");
+        // Day and month 0 are rejected here, before the key could collide with an empty cache slot
+        if (day < 1 || day > 31 || month < 1 || month > 12 || year > 9999) {
+            throw error("invalid date");
+        }
+        int key = (year * 100 + month) * 100 + day;
+        int slot = (key ^ (key >>> 10)) & (DATE_CACHE_SIZE - 1);
+        if (dateKeys[slot] != key) {
+            try {
+                dateMillis[slot] = LocalDate.of(year, month, day).atStartOfDay(zone).toInstant().toEpochMilli();
+            } catch (DateTimeException e) {
+                throw error("invalid date");
+            }
+            dateKeys[slot] = key;
+        }
+        return dateMillis[slot];
+    }
+
+    // Returns the end of the field starting at pos and moves pos past its delimiter
+    private int field(int to, char delimiter) throws IOException {
+        for (int i = pos; i < to; i++) {
+            if (line[i] == delimiter) {
+                int fieldEnd = i;
+                pos = i + 1;
+                return fieldEnd;
+            }
+        }
+        throw error("invalid date");
+    }
+
+    private long parseNumber(int from, int to, String what) throws IOException {
+        if (from == to || to - from > 18) {
+            throw error("invalid " + what);
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = line[i];
+            if (c < '0' || c > '9') {
+                throw error("invalid " + what);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private AccessLevel accessLevel(int from, int to) throws IOException {
+        if (matches(from, to, "USER")) return AccessLevel.USER;
+        if (matches(from, to, "SYSTEM")) return AccessLevel.SYSTEM;
+        throw error("access level must be USER or SYSTEM");
+    }
+
+    private boolean matches(int from, int to, String word) {
+        if (to - from != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (line[from + i] != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private String text(int from, int to, String what) throws IOException {
+        from = skipBlanks(from, to);
+        to = trimEnd(from, to);
+        if (from == to) {
+            throw error("missing " + what);
+        }
+        return new String(line, from, to - from);
+    }
+
+    private int skipBlanks(int from, int to) {
+        while (from < to && line[from] <= ' ') from++;
+        return from;
+    }
+
+    private int trimEnd(int from, int to) {
+        while (to > from && line[to - 1] <= ' ') to--;
+        return to;
+    }
+
+    private IOException error(String message) {
+        return new IOException("line " + lineNumber + ": " + message);
+    }
+
+    // Links FileNode/DirectoryNode objects under an existing directory. Aggregates are derived once
+    // in finish(), children before parents.
+    private static final class NodeSink implements Sink {
+        private final DirectoryNode root;
+        private final List<DirectoryNode> directories = new ArrayList<>();
+        private final List<TreeNode> topLevel = new ArrayList<>();
+
+        NodeSink(DirectoryNode root) {
+            this.root = root;
+            this.directories.add(root);
+        }
+
+        @Override
+        public Object root() {
+            return root;
+        }
+
+        @Override
+        public Object directory(Object parent, String name, long lastModified) {
+            DirectoryNode dir = new DirectoryNode(name, new Date(lastModified), AccessLevel.USER);
+            if (!link((DirectoryNode) parent, dir)) {
+                return null;
+            }
+            directories.add(dir);
+            return dir;
+        }
+
+        @Override
+        public boolean file(Object parent, String name, long lastModified, long size, AccessLevel accessLevel) {
+            FileNode file = new FileNode(name, name.substring(name.lastIndexOf('.') + 1), new Date(lastModified), size, accessLevel);
+            return link((DirectoryNode) parent, file);
+        }
+
+        private boolean link(DirectoryNode parent, TreeNode node) {
+            if (!parent.attachChild(node)) {
+                return false;
+            }
+            if (parent == root) {
+                topLevel.add(node);
+            }
+            return true;
+        }
+
+        @Override
+        public void finish() {
+            for (int i = directories.size() - 1; i >= 0; i--) {
+                directories.get(i).recalculateProperties();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.eysoftpro.filesystem;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Per-operation latency histograms (nanoseconds), per-query node-visit histograms and failure
+// counters, filled in by FileSystem while metrics are enabled. Reads may run concurrently with
+// recording; a report taken meanwhile is approximate, not a consistent cut.
+public class FileSystemMetrics {
+    public enum Operation { ADD, REMOVE, BATCH, FIND, SEARCH, LIST, LOAD }
+
+    private final Histogram[] latency = new Histogram[Operation.values().length];
+    private final Histogram[] visits = new Histogram[Operation.values().length];
+    private final LongAdder[] failures = new LongAdder[Operation.values().length];
+
+    public FileSystemMetrics() {
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new Histogram();
+            visits[i] = new Histogram();
+            failures[i] = new LongAdder();
+        }
+    }
+
+    void record(Operation operation, long nanos, long visited, boolean failed) {
+        int i = operation.ordinal();
+        latency[i].record(nanos);
+        if (visited >= 0) {
+            visits[i].record(visited);
+        }
+        if (failed) {
+            failures[i].increment();
+        }
+    }
+
+    public Histogram getLatency(Operation operation) {
+        return latency[operation.ordinal()];
+    }
+
+    // Nodes looked at per call: traversal visits for find/list, results for index searches
+    public Histogram getVisits(Operation operation) {
+        return visits[operation.ordinal()];
+    }
+
+    public long getFailures(Operation operation) {
+        return failures[operation.ordinal()].sum();
+    }
+
+    public void reset() {
+        for (int i = 0; i < latency.length; i++) {
+            latency[i].reset();
+            visits[i].reset();
+            failures[i].reset();
+        }
+    }
+
+    // One line per operation that has been called, latencies in microseconds
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-8s %10s %8s %10s %10s %10s %10s %10s %12s%n",
+                "op", "count", "failed", "mean us", "p50 us", "p99 us", "max us", "p99 nodes", "max nodes"));
+        for (Operation operation : Operation.values()) {
+            Histogram h = getLatency(operation);
+            if (h.getCount() == 0) {
+                continue;
+            }
+            Histogram v = getVisits(operation);
+            out.append(String.format("%-8s %10d %8d %10.1f %10.1f %10.1f %10.1f %10d %12d%n",
+                    operation, h.getCount(), getFailures(operation), h.getMean() / 1000,
+                    h.getPercentile(50) / 1000.0, h.getPercentile(99) / 1000.0, h.getMax() / 1000.0,
+                    v.getPercentile(99), v.getMax()));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,291 @@
+package com.eysoftpro.filesystem;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Binary image of a whole tree, aggregates included, so that startup does not have to
+// parse text or recompute anything. All numbers are big-endian.
+//
+//   header   int MAGIC, int VERSION, int nodeCount, int stringCount, long journalSequence
+//   strings  stringCount x (int length, length chars) - names, extensions and access levels, each once
+//   nodes    nodeCount records in pre-order, the root first:
+//            byte DIRECTORY|FILE, int name, int accessLevel, long lastModified, long size, then
+//            file:      int extension
+//            directory: int ownAccessLevel, long ownLastModified, int systemChildren, long descendants,
+//                       long systemDescendants, int childCount
+//
+// Loading maps the file with FileChannel.map and reads the records straight from the buffer. Strings
+// are decoded once per distinct value; after that a node costs its objects and a few reads.
+public class FileSystemSnapshot {
+    private static final int MAGIC = 0x45594653; // "EYFS"
+    private static final int VERSION = 1; // a snapshot of any other version is rejected
+    private static final byte FILE = 0;
+    private static final byte DIRECTORY = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_RECORD = 1 + 4 + 4 + 8 + 8 + 4 + 8 + 4 + 8 + 8 + 4;
+    private static final long WINDOW_SIZE = 1L << 30; // Mapped at a time, so files over 2 GB work too
+
+    private FileSystemSnapshot() {
+    }
+
+    // journalSequence is the last journal record already reflected in the tree
+    public static void save(DirectoryNode root, Path path, long journalSequence) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        long[] nodes = new long[1];
+        TreeTraversal.forEach(root, node -> {
+            id(ids, strings, node.getName());
+            id(ids, strings, node.getAccessLevel().name());
+            if (node instanceof FileNode) {
+                id(ids, strings, ((FileNode) node).getExtension());
+            } else {
+                id(ids, strings, ((DirectoryNode) node).getOwnAccessLevel().name());
+            }
+            nodes[0]++;
+        });
+        if (nodes[0] > Integer.MAX_VALUE) {
+            throw new IOException("Too many nodes for a snapshot: " + nodes[0]);
+        }
+
+        // Written next to the target and moved over it, so a failed save leaves the old snapshot intact
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            out.putInt(MAGIC).putInt(VERSION).putInt((int) nodes[0]).putInt(strings.size()).putLong(journalSequence);
+            for (String s : strings) {
+                ensure(channel, out, 4);
+                out.putInt(s.length());
+                for (int i = 0; i < s.length(); i++) {
+                    ensure(channel, out, 2);
+                    out.putChar(s.charAt(i));
+                }
+            }
+            IOException[] failure = new IOException[1];
+            TreeTraversal.walk(root, (node, depth) -> {
+                try {
+                    ensure(channel, out, MAX_RECORD);
+                } catch (IOException e) {
+                    failure[0] = e;
+                    return false;
+                }
+                boolean directory = node instanceof DirectoryNode;
+                out.put(directory ? DIRECTORY : FILE)
+                        .putInt(ids.get(node.getName()))
+                        .putInt(ids.get(node.getAccessLevel().name()))
+                        .putLong(node.getLastModified().getTime())
+                        .putLong(node.getSize());
+                if (directory) {
+                    DirectoryNode dir = (DirectoryNode) node;
+                    out.putInt(ids.get(dir.getOwnAccessLevel().name()))
+                            .putLong(dir.getOwnLastModified().getTime())
+                            .putInt(dir.getSystemChildCount())
+                            .putLong(dir.getDescendantCount())
+                            .putLong(dir.getSystemDescendantCount())
+                            .putInt(dir.getChildCount());
+                } else {
+                    out.putInt(ids.get(((FileNode) node).getExtension()));
+                }
+                return true;
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            flush(channel, out);
+            channel.force(true); // on disk before the move makes it the snapshot
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(path.toAbsolutePath().getParent()); // and the move itself
+    }
+
+    // Makes a rename in dir durable. Not every platform can open a directory for this (Windows
+    // cannot), and there the rename is left to the file system.
+    private static void forceDirectory(Path dir) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException | UnsupportedOperationException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    // Links the snapshot's top-level nodes under root and adds them to topLevel as they are linked, so
+    // the caller knows what was added even if the snapshot turns out to be corrupt. Root's own
+    // aggregates are left to the caller; the snapshot's root record only contributes its children.
+    // Returns the snapshot's journal sequence.
+    public static long load(Path path, DirectoryNode root, List<TreeNode> topLevel) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            in.ensure(24);
+            if (in.buffer.getInt() != MAGIC) {
+                throw new IOException("Not a file system snapshot: " + path);
+            }
+            int version = in.buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + path);
+            }
+            int nodeCount = in.buffer.getInt();
+            String[] strings = new String[in.buffer.getInt()];
+            long journalSequence = in.buffer.getLong();
+            for (int i = 0; i < strings.length; i++) {
+                in.ensure(4);
+                char[] chars = new char[in.buffer.getInt()];
+                for (int c = 0; c < chars.length; ) {
+                    in.ensure(2);
+                    int n = Math.min(chars.length - c, in.buffer.remaining() / 2);
+                    if (n == 0) {
+                        throw new EOFException("Snapshot ends unexpectedly: " + path);
+                    }
+                    in.buffer.asCharBuffer().get(chars, c, n);
+                    in.buffer.position(in.buffer.position() + n * 2);
+                    c += n;
+                }
+                strings[i] = new String(chars);
+            }
+
+            // Directories still waiting for children, with how many are left
+            DirectoryNode[] open = new DirectoryNode[16];
+            int[] remaining = new int[16];
+            int depth = -1;
+            for (int i = 0; i < nodeCount; i++) {
+                in.ensure(MAX_RECORD);
+                ByteBuffer b = in.buffer;
+                byte type = b.get();
+                String name = strings[b.getInt()];
+                AccessLevel accessLevel = accessLevel(strings[b.getInt()], path);
+                long lastModified = b.getLong();
+                long size = b.getLong();
+                TreeNode node;
+                int childCount = 0;
+                if (type == DIRECTORY) {
+                    AccessLevel ownAccessLevel = accessLevel(strings[b.getInt()], path);
+                    long ownLastModified = b.getLong();
+                    int systemChildren = b.getInt();
+                    long descendants = b.getLong();
+                    long systemDescendants = b.getLong();
+                    childCount = b.getInt();
+                    DirectoryNode dir = new DirectoryNode(name, new Date(ownLastModified), ownAccessLevel);
+                    dir.restoreAggregates(size, new Date(lastModified), accessLevel, systemChildren, descendants, systemDescendants);
+                    node = dir;
+                } else if (type == FILE) {
+                    node = new FileNode(name, strings[b.getInt()], new Date(lastModified), size, accessLevel);
+                } else {
+                    throw new IOException("Corrupt snapshot record " + i + " in " + path);
+                }
+
+                if (i == 0) {
+                    node = root; // the saved root only contributes its children
+                } else {
+                    if (depth < 0) {
+                        throw new IOException("Corrupt snapshot: record " + i + " has no parent");
+                    }
+                    DirectoryNode parent = open[depth];
+                    if (!parent.attachChild(node)) {
+                        throw new IOException("Corrupt snapshot: duplicate entry " + name + " in " + parent.getFullPath());
+                    }
+                    if (parent == root) {
+                        topLevel.add(node);
+                    }
+                    remaining[depth]--;
+                }
+                if (childCount > 0) {
+                    depth++;
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                        remaining = Arrays.copyOf(remaining, depth * 2);
+                    }
+                    open[depth] = (DirectoryNode) node;
+                    remaining[depth] = childCount;
+                }
+                while (depth >= 0 && remaining[depth] == 0) {
+                    // All of its children are complete now
+                    open[depth].restoreContentHash(); // not saved: it is cheap to derive
+                    depth--;
+                }
+            }
+            if (depth >= 0) {
+                throw new IOException("Corrupt snapshot: truncated after " + nodeCount + " records");
+            }
+            return journalSequence;
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Snapshot ends unexpectedly: " + path);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt snapshot: string reference out of range in " + path);
+        }
+    }
+
+    private static AccessLevel accessLevel(String name, Path path) throws IOException {
+        try {
+            return AccessLevel.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt snapshot: unknown access level " + name + " in " + path);
+        }
+    }
+
+    private static void id(Map<String, Integer> ids, List<String> strings, String s) {
+        if (!ids.containsKey(s)) {
+            ids.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    private static void ensure(FileChannel channel, ByteBuffer out, int bytes) throws IOException {
+        if (out.remaining() < bytes) {
+            flush(channel, out);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    // A read-only mapping of a window of the file, moved forward whenever a read would run past it
+    private static final class Input {
+        private final FileChannel channel;
+        private final long length;
+        private long windowStart;
+        private MappedByteBuffer buffer;
+
+        Input(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.length = channel.size();
+            map(0);
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            long position = windowStart + buffer.position();
+            if (position + buffer.remaining() < length) {
+                map(position);
+            }
+            // Near the end of the file a short record is fine; a truncated one fails with BufferUnderflowException
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, length - position));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.eysoftpro.filesystem;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// The tree of a FileSystem as it was right after one mutation. A version never changes, so queries
+// on it need no locks and always see one consistent state, however long they run and whatever the
+// live tree does meanwhile. Versions share every subtree the mutations between them did not touch.
+// Nodes are read-only views; children are listed in name order.
+public class FileSystemVersion {
+    private final long number;
+    private final long created;
+    final PersistentNode root;
+
+    FileSystemVersion(long number, long created, PersistentNode root) {
+        this.number = number;
+        this.created = created;
+        this.root = root;
+    }
+
+    // Versions are numbered 1, 2, ... from the time versioning was enabled
+    public long getNumber() {
+        return number;
+    }
+
+    public Date getCreated() {
+        return new Date(created);
+    }
+
+    long getCreatedMillis() {
+        return created;
+    }
+
+    public DirectoryNode getRoot() {
+        return new VersionDirectoryNode(root, null, -1);
+    }
+
+    public long getNodeCount() {
+        return root.descendants + 1;
+    }
+
+    // Same path syntax as FileSystem; null if there is no such directory in this version
+    public DirectoryNode findDirectory(String path) {
+        DirectoryNode current = getRoot();
+        int start = 0;
+        while (current != null && start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) end = path.length();
+            if (end > start) {
+                current = current.getDirectory(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return current;
+    }
+
+    // Case-insensitive, like FileSystem.searchByName, but by walking the version: it has no indexes
+    public List<TreeNode> searchByName(String name) {
+        String key = NameIndex.foldCase(name);
+        return TreeTraversal.findAll(getRoot(), node -> NameIndex.foldCase(node.getName()).equals(key));
+    }
+
+    public List<FileNode> searchByExtension(String extension) {
+        String key = NameIndex.foldCase(extension);
+        List<FileNode> files = new ArrayList<>();
+        for (TreeNode node : TreeTraversal.findAll(getRoot(), node -> node instanceof FileNode
+                && NameIndex.foldCase(((FileNode) node).getExtension()).equals(key))) {
+            files.add((FileNode) node);
+        }
+        return files;
+    }
+
+    public void displayFileSystem() {
+        ListingWriter out = ListingWriter.console();
+        synchronized (out) {
+            TreeTraversal.walk(getRoot(), (node, depth) -> {
+                out.write(node, depth);
+                return true;
+            });
+            out.flush();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "version " + number + " of " + getCreated() + " (" + getNodeCount() + " nodes)";
+    }
+}
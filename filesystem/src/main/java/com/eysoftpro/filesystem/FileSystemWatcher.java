@@ -0,0 +1,405 @@
+package com.eysoftpro.filesystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Keeps a FileSystem in step with the sources it was loaded from, so changes do not need a reload.
+//  - Directories imported from disk (FileSystem.importFromDisk) are watched with a WatchService, one
+//    registration per directory. An event only marks the entry's name as changed; on refresh each
+//    changed name is looked up on disk again and compared with the tree.
+//  - A myfiles.txt manifest is checked by modification time and size. When it changed, it is parsed
+//    again and compared with the previous version, and only the differences are applied, so entries
+//    added to the tree by other means are left alone.
+// Events arriving in a burst are coalesced: a refresh waits until no event came for quietMillis
+// (at most maxDelayMillis in all). Each refresh applies its changes as one FileSystemBatch, without
+// access checks, since the sources are authoritative. A changed file is replaced (remove + add).
+// Operations that fail, and refreshes that fail as a whole, go to the error handler (by default
+// printed to standard error); the operations that failed in the last refresh are also kept.
+public class FileSystemWatcher implements Closeable {
+    private final FileSystem fileSystem;
+    private final WatchService watchService;
+    private final DiskScanner scanner = new DiskScanner();
+    private final long quietMillis;
+    private final long maxDelayMillis;
+
+    // Watched directory -> where it is on disk and in the tree
+    private final Map<WatchKey, Watched> watched = new ConcurrentHashMap<>();
+    // Names changed since the last refresh, per watched directory; null means "compare everything"
+    private final Map<Watched, Set<String>> pending = new LinkedHashMap<>();
+
+    private Path manifest;
+    private FileTime manifestTime;
+    private long manifestSize;
+    private DirectoryNode manifestTree;
+
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong operations = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile List<FileSystemException> lastErrors = Collections.emptyList();
+    private volatile Consumer<? super Exception> errorHandler = e -> System.err.println("File system watcher: " + e.getMessage());
+    private volatile Thread thread;
+
+    private static final class Watched {
+        final Path disk;
+        final String path;
+
+        Watched(Path disk, String path) {
+            this.disk = disk;
+            this.path = path;
+        }
+    }
+
+    public FileSystemWatcher(FileSystem fileSystem) throws IOException {
+        this(fileSystem, 200, 2000);
+    }
+
+    public FileSystemWatcher(FileSystem fileSystem, long quietMillis, long maxDelayMillis) throws IOException {
+        this.fileSystem = fileSystem;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.quietMillis = quietMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    // Watches a disk directory that is mirrored at path in the tree, e.g. after
+    // importFromDisk("/", "/data/photos", ...) it is watchDirectory("/photos", Paths.get("/data/photos"))
+    public void watchDirectory(String path, Path directory) throws IOException {
+        if (fileSystem.findDirectory(path) == null) {
+            throw new IOException("Path not found: " + path);
+        }
+        register(directory, path);
+    }
+
+    // Watches the manifest the tree was loaded from; its current content is the baseline
+    public synchronized void watchManifest(Path manifest) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(manifest, BasicFileAttributes.class);
+        this.manifestTree = parse(manifest);
+        this.manifest = manifest;
+        this.manifestTime = attributes.lastModifiedTime();
+        this.manifestSize = attributes.size();
+    }
+
+    // Refreshes in the background until closed
+    public synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this::run, "file-system-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread current = thread;
+        watchService.close();
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    public long getOperations() {
+        return operations.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    // The operations that failed in the last refresh that applied any, in batch order; empty if
+    // they all succeeded
+    public List<FileSystemException> getLastErrors() {
+        return lastErrors;
+    }
+
+    // Called from the refreshing thread with each failed operation (a FileSystemException) and each
+    // refresh that failed as a whole (an IOException; it is retried with the next change)
+    public void setErrorHandler(Consumer<? super Exception> handler) {
+        this.errorHandler = handler;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    // Keep collecting until the burst is over
+                    long deadline = System.currentTimeMillis() + maxDelayMillis;
+                    while (key != null) {
+                        collect(key);
+                        long left = deadline - System.currentTimeMillis();
+                        key = left > 0 ? watchService.poll(Math.min(quietMillis, left), TimeUnit.MILLISECONDS) : null;
+                    }
+                }
+                try {
+                    refresh();
+                } catch (IOException e) {
+                    errorHandler.accept(e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    // Applies whatever changed since the last refresh and returns the number of operations applied.
+    // Called by the background thread; can also be called directly when not started.
+    public synchronized int refresh() throws IOException {
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            collect(key);
+        }
+        FileSystemBatch batch = new FileSystemBatch();
+        for (Map.Entry<Watched, Set<String>> entry : pending.entrySet()) {
+            compare(entry.getKey(), entry.getValue(), batch);
+        }
+        pending.clear();
+        checkManifest(batch);
+        if (batch.size() == 0) {
+            return 0;
+        }
+        List<FileSystemException> errors = fileSystem.applyRefresh(batch);
+        List<FileSystemException> failed = new ArrayList<>();
+        for (FileSystemException error : errors) {
+            if (error != null) {
+                failed.add(error);
+            }
+        }
+        int applied = errors.size() - failed.size();
+        refreshes.incrementAndGet();
+        operations.addAndGet(applied);
+        failures.addAndGet(failed.size());
+        lastErrors = Collections.unmodifiableList(failed);
+        Consumer<? super Exception> handler = errorHandler;
+        for (FileSystemException error : failed) {
+            handler.accept(error);
+        }
+        return applied;
+    }
+
+    private synchronized void collect(WatchKey key) {
+        Watched directory = watched.get(key);
+        if (directory == null) {
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Set<String> names = pending.get(directory);
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                pending.put(directory, null); // events were lost
+            } else if (names != null || !pending.containsKey(directory)) {
+                if (names == null) {
+                    names = new HashSet<>();
+                    pending.put(directory, names);
+                }
+                names.add(event.context().toString());
+            }
+        }
+        if (!key.reset()) {
+            watched.remove(key); // the directory is gone; its parent's event removes it from the tree
+        }
+    }
+
+    // Registers directory and every directory below it
+    private void register(Path directory, String path) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                String treePath = path;
+                if (!dir.equals(directory)) {
+                    for (Path part : directory.relativize(dir)) {
+                        treePath = child(treePath, part.toString());
+                    }
+                }
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watched.put(key, new Watched(dir, treePath));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void unregister(Path directory) {
+        watched.entrySet().removeIf(entry -> {
+            boolean below = entry.getValue().disk.startsWith(directory);
+            if (below) {
+                entry.getKey().cancel();
+            }
+            return below;
+        });
+    }
+
+    // Compares the named entries of one watched directory (all of them if names is null) with the tree
+    private void compare(Watched directory, Set<String> names, FileSystemBatch batch) throws IOException {
+        DirectoryNode node = fileSystem.findDirectory(directory.path);
+        if (node == null || !Files.isDirectory(directory.disk, LinkOption.NOFOLLOW_LINKS)) {
+            return; // removed meanwhile; the event in its parent takes it out of the tree
+        }
+        if (names == null) {
+            names = new HashSet<>();
+            for (TreeNode child : node.children()) {
+                names.add(child.getName());
+            }
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.disk)) {
+                for (Path entry : stream) {
+                    names.add(entry.getFileName().toString());
+                }
+            }
+        }
+        for (String name : names) {
+            Path entry = directory.disk.resolve(name);
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                attributes = null;
+            }
+            boolean isDirectory = attributes != null && attributes.isDirectory();
+            boolean isFile = attributes != null && attributes.isRegularFile();
+            DirectoryNode oldDirectory = node.getDirectory(name);
+            FileNode oldFile = node.getFile(name);
+            if (oldDirectory != null && !isDirectory) {
+                batch.removeDirectory(directory.path, name);
+                unregister(entry); // a directory moved away is still watched where it went
+            }
+            if (oldFile != null && (!isFile || oldFile.getSize() != attributes.size()
+                    || oldFile.getLastModified().getTime() != attributes.lastModifiedTime().toMillis())) {
+                batch.removeFile(directory.path, name);
+                oldFile = null;
+            }
+            if (isFile && oldFile == null) {
+                int dot = name.lastIndexOf('.');
+                batch.addFile(directory.path, name, dot >= 0 ? name.substring(dot + 1) : "", attributes.size(), "USER",
+                        new Date(attributes.lastModifiedTime().toMillis()));
+            } else if (isDirectory && oldDirectory == null) {
+                // Register before scanning, so nothing created in between is missed
+                String path = child(directory.path, name);
+                register(entry, path);
+                addSubtree(directory.path, scanner.scan(entry), batch);
+            }
+        }
+    }
+
+    private void checkManifest(FileSystemBatch batch) throws IOException {
+        if (manifest == null) {
+            return;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(manifest, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return; // being replaced; try again next time
+        }
+        if (attributes.lastModifiedTime().equals(manifestTime) && attributes.size() == manifestSize) {
+            return;
+        }
+        DirectoryNode tree;
+        try {
+            tree = parse(manifest);
+        } catch (IOException e) {
+            return; // probably half written; the next change of time or size brings it back here
+        }
+        diff(manifestTree, tree, "/", batch);
+        manifestTree = tree;
+        manifestTime = attributes.lastModifiedTime();
+        manifestSize = attributes.size();
+    }
+
+    private static DirectoryNode parse(Path manifest) throws IOException {
+        DirectoryNode root = new DirectoryNode("root", new Date(), AccessLevel.USER);
+        try (Reader reader = Files.newBufferedReader(manifest)) {
+            new FileSystemLoader(root).load(reader);
+        } catch (Exception e) {
+            throw new IOException("Parsing file system data unsuccesfull: " + e.getMessage());
+        }
+        return root;
+    }
+
+    // Adds to batch what turns the children of before into the children of after, below path
+    private static void diff(DirectoryNode before, DirectoryNode after, String path, FileSystemBatch batch) {
+        for (TreeNode child : before.children()) {
+            if (child instanceof DirectoryNode ? after.getDirectory(child.getName()) == null : after.getFile(child.getName()) == null) {
+                if (child instanceof DirectoryNode) {
+                    batch.removeDirectory(path, child.getName());
+                } else {
+                    batch.removeFile(path, child.getName());
+                }
+            }
+        }
+        for (TreeNode child : after.children()) {
+            if (child instanceof DirectoryNode) {
+                DirectoryNode old = before.getDirectory(child.getName());
+                if (old == null) {
+                    addSubtree(path, (DirectoryNode) child, batch);
+                } else {
+                    diff(old, (DirectoryNode) child, child(path, child.getName()), batch);
+                }
+            } else {
+                FileNode file = (FileNode) child;
+                FileNode old = before.getFile(file.getName());
+                if (old != null && (old.getSize() != file.getSize() || !old.getLastModified().equals(file.getLastModified())
+                        || old.getAccessLevel() != file.getAccessLevel())) {
+                    batch.removeFile(path, file.getName());
+                    old = null;
+                }
+                if (old == null) {
+                    batch.addFile(path, file.getName(), file.getExtension(), file.getSize(), file.getAccessLevel().name(), file.getLastModified());
+                }
+            }
+        }
+    }
+
+    private static void addSubtree(String path, DirectoryNode directory, FileSystemBatch batch) {
+        String access = directory.getOwnAccessLevel() != null ? directory.getOwnAccessLevel().name() : AccessLevel.USER.name();
+        Date lastModified = directory.getOwnLastModified() != null ? directory.getOwnLastModified() : directory.getLastModified();
+        batch.addDirectory(path, directory.getName(), access, lastModified);
+        String inside = child(path, directory.getName());
+        for (TreeNode child : directory.children()) {
+            if (child instanceof DirectoryNode) {
+                addSubtree(inside, (DirectoryNode) child, batch);
+            } else {
+                FileNode file = (FileNode) child;
+                batch.addFile(inside, file.getName(), file.getExtension(), file.getSize(), file.getAccessLevel().name(), file.getLastModified());
+            }
+        }
+    }
+
+    private static String child(String path, String name) {
+        return path.endsWith("/") ? path + name : path + "/" + name;
+    }
+}
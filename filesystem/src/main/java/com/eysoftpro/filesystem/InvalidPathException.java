@@ -0,0 +1,7 @@
+package com.eysoftpro.filesystem;
+
+public class InvalidPathException extends FileSystemException{
+    public InvalidPathException(String message) {
+        super(message);
+    }
+}
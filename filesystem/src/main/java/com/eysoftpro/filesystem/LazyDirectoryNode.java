@@ -0,0 +1,157 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Arrays;
+import java.util.Date;
+
+// A directory of a lazily loaded manifest (see LazyManifest). Its subdirectories are always in
+// memory; its files are read in by the first call that looks at the children, and may be dropped
+// again while they are unchanged. The aggregates always count every file, read in or not.
+final class LazyDirectoryNode extends DirectoryNode {
+    private final LazyManifest manifest;
+    final int level; // in the manifest, whose root is level 0
+
+    // Filled in while the manifest is scanned
+    long[] runs = NO_RUNS; // start and end byte offsets of each run of this directory's file lines
+    int fileCount;
+    int systemFiles;
+    long fileBytes;
+    long minFileSize = Long.MAX_VALUE;
+    long maxFileSize;
+    long minFileDate = Long.MAX_VALUE;
+    long maxFileDate = Long.MIN_VALUE;
+    long fileHash; // Sum of the files' ContentHash values
+    // What searches check before reading the files in: the hash codes of the case-folded file
+    // names, sorted, and the distinct case-folded extensions
+    int[] nameHashes = NO_HASHES;
+    String[] extensions = NO_EXTENSIONS;
+
+    volatile boolean loaded = true; // Until the scan is over
+    int loadedCount; // Files read in by the last load
+    boolean changed; // Files were added or removed, so the manifest no longer describes them
+    volatile boolean referenced; // Used since the eviction clock last passed
+
+    private static final long[] NO_RUNS = new long[0];
+    private static final int[] NO_HASHES = new int[0];
+    private static final String[] NO_EXTENSIONS = new String[0];
+
+    LazyDirectoryNode(LazyManifest manifest, String name, Date lastModified, int level) {
+        super(name, lastModified, AccessLevel.USER);
+        this.manifest = manifest;
+        this.level = level;
+    }
+
+    void addRun(long start, long end) {
+        int n = runs.length;
+        if (n > 0 && runs[n - 1] == start) {
+            runs[n - 1] = end; // the line right after the previous one
+            return;
+        }
+        runs = Arrays.copyOf(runs, n + 2);
+        runs[n] = start;
+        runs[n + 1] = end;
+    }
+
+    // Called by the scan for each file line, with fileCount not yet counting it
+    void summarize(String foldedName, String foldedExtension, long size, long lastModified) {
+        if (fileCount == nameHashes.length) {
+            nameHashes = Arrays.copyOf(nameHashes, Math.max(4, fileCount * 2));
+        }
+        nameHashes[fileCount] = foldedName.hashCode();
+        if (!hasExtension(foldedExtension)) {
+            extensions = Arrays.copyOf(extensions, extensions.length + 1);
+            extensions[extensions.length - 1] = foldedExtension.intern();
+        }
+        minFileSize = Math.min(minFileSize, size);
+        maxFileSize = Math.max(maxFileSize, size);
+        minFileDate = Math.min(minFileDate, lastModified);
+        maxFileDate = Math.max(maxFileDate, lastModified);
+    }
+
+    // Sorts and trims the name hashes once the scan is over
+    void sealSummary() {
+        int[] hashes = Arrays.copyOf(nameHashes, fileCount);
+        Arrays.sort(hashes);
+        int distinct = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (distinct == 0 || hashes[i] != hashes[distinct - 1]) {
+                hashes[distinct++] = hashes[i];
+            }
+        }
+        nameHashes = distinct == hashes.length ? hashes : Arrays.copyOf(hashes, distinct);
+    }
+
+    // Whether one of the manifest's files here may be named foldedName; false means certainly not
+    boolean mayHoldName(String foldedName) {
+        return Arrays.binarySearch(nameHashes, foldedName.hashCode()) >= 0;
+    }
+
+    boolean hasExtension(String foldedExtension) {
+        for (String extension : extensions) {
+            if (extension.equals(foldedExtension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void use() {
+        if (!loaded) {
+            manifest.load(this);
+        }
+        if (!referenced) {
+            referenced = true;
+        }
+    }
+
+    // Links and unlinks a file without loading or marking the directory changed
+    void link(FileNode file) {
+        super.attachChild(file);
+    }
+
+    void unlink(FileNode file) {
+        super.detachChild(file);
+    }
+
+    @Override
+    boolean attachChild(TreeNode child) {
+        use();
+        if (child instanceof FileNode) {
+            changed = true;
+        }
+        return super.attachChild(child);
+    }
+
+    @Override
+    void detachChild(TreeNode child) {
+        use();
+        if (child instanceof FileNode) {
+            changed = true;
+        }
+        super.detachChild(child);
+    }
+
+    @Override
+    public FileNode getFile(String name) {
+        use();
+        return super.getFile(name);
+    }
+
+    @Override
+    TreeNode getFirstChild() {
+        use();
+        return super.getFirstChild();
+    }
+
+    @Override
+    public Iterable<TreeNode> children() {
+        use();
+        return super.children();
+    }
+
+    // Counts the files that are not read in, so derived access levels stay right without loading
+    @Override
+    public int getChildCount() {
+        int count = super.getChildCount();
+        return loaded ? count : count + fileCount;
+    }
+}
@@ -0,0 +1,426 @@
+package com.eysoftpro.filesystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+// A manifest loaded without its files (see FileSystem.loadFromFileSystemLazily). The scan builds
+// every directory, as a LazyDirectoryNode, with aggregates that count its files, and records where
+// in the manifest each directory's file lines are. A directory's files are read in, with one
+// positioned read per run of lines, the first time its children are looked at. Memory is bounded
+// by unloading directories whose files are unchanged, least recently used first (the CLOCK
+// approximation: each directory has a referenced bit, cleared as the clock hand passes), once
+// more than maxLoadedFiles files are read in. Changed directories stay in memory for good and do
+// not count. The manifest must not be rewritten while it is in use; reads fail if it was.
+final class LazyManifest {
+    private final FileSystem fileSystem;
+    private final Path path;
+    private final long maxLoadedFiles;
+    private long length;
+    private long lastModified;
+    private boolean rootLine;
+
+    private final List<LazyDirectoryNode> directories = new ArrayList<>(); // in manifest order
+    private final List<TreeNode> topLevel = new ArrayList<>();
+    private final UsageRollups.Tally files = new UsageRollups.Tally(0);
+    private final ArrayDeque<LazyDirectoryNode> clock = new ArrayDeque<>(); // guarded by itself
+    private final AtomicLong loadedFiles = new AtomicLong();
+
+    LazyManifest(FileSystem fileSystem, Path path, long maxLoadedFiles) {
+        if (maxLoadedFiles < 0) {
+            throw new IllegalArgumentException("maxLoadedFiles must not be negative");
+        }
+        this.fileSystem = fileSystem;
+        this.path = path;
+        this.maxLoadedFiles = maxLoadedFiles;
+    }
+
+    // Builds the directories under root, which is not lazy: files directly in it are read in at once
+    void scan(DirectoryNode root) throws IOException {
+        length = Files.size(path);
+        lastModified = Files.getLastModifiedTime(path).toMillis();
+        FileSystemLoader loader = new FileSystemLoader(new Scanner(root));
+        try (InputStream in = Files.newInputStream(path)) {
+            loader.load(in);
+        } finally {
+            rootLine = loader.hasRootLine(); // the directories scanned before an error are read in with it
+        }
+    }
+
+    // Subtrees linked directly under the root by scan, even if it failed halfway
+    List<TreeNode> getTopLevelNodes() {
+        return topLevel;
+    }
+
+    // Usage of every file below the lazy directories, read in or not
+    UsageRollups.Tally getFileUsage() {
+        return files;
+    }
+
+    // Ends the scan: from now on a directory's files are read in when it is used. Until then the
+    // directories look empty, so the listeners told about the new subtrees do not read them all in.
+    void release() {
+        for (LazyDirectoryNode dir : directories) {
+            if (dir.fileCount > 0) {
+                dir.loaded = false;
+            }
+        }
+    }
+
+    long getLoadedFiles() {
+        return loadedFiles.get();
+    }
+
+    void load(LazyDirectoryNode dir) {
+        if (dir.loaded) {
+            return;
+        }
+        try (FileChannel channel = open()) {
+            load(dir, read(dir, channel));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the files of " + dir.getFullPath() + " from " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Links files, which were read for dir, unless another thread has loaded it meanwhile. The
+    // listeners are told under dir's monitor, so they hear of a load and its unload in that order.
+    private void load(LazyDirectoryNode dir, List<FileNode> read) {
+        synchronized (dir) {
+            if (dir.loaded) {
+                return;
+            }
+            for (FileNode file : read) {
+                dir.link(file);
+            }
+            dir.loadedCount = read.size();
+            dir.loaded = true;
+            dir.referenced = true;
+            loadedFiles.addAndGet(read.size());
+            synchronized (clock) {
+                clock.addLast(dir);
+            }
+            for (FileNode file : read) {
+                fileSystem.fireLoaded(file);
+            }
+        }
+    }
+
+    // Reads in every directory with a file matching the predicate, so an index search over the
+    // tree sees them. Only directories whose summary passes mayHold are read (see
+    // LazyDirectoryNode.summarize); those without a match are dropped again.
+    void loadMatching(Predicate<? super LazyDirectoryNode> mayHold, Predicate<? super FileNode> predicate) {
+        List<LazyDirectoryNode> candidates = new ArrayList<>();
+        for (LazyDirectoryNode dir : directories) {
+            if (!dir.loaded && mayHold.test(dir)) {
+                candidates.add(dir);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        forEachUnloaded(candidates, (dir, read) -> {
+            for (FileNode file : read) {
+                if (predicate.test(file)) {
+                    load(dir, read);
+                    return;
+                }
+            }
+        });
+    }
+
+    // Reads in the directories that may hold one of the k files with the largest value, given
+    // the indexed files' values in descending order. Directories are taken by descending maximum
+    // until k values at least as large as the next directory's maximum are known: each directory
+    // taken is sure to hold a file with its maximum.
+    void loadTop(int k, ToLongFunction<FileNode> value, ToLongFunction<LazyDirectoryNode> maximum, Iterator<FileNode> loadedDescending) {
+        if (k <= 0) {
+            return;
+        }
+        PriorityQueue<Long> best = new PriorityQueue<>(); // the k largest values so far, smallest on top
+        while (best.size() < k && loadedDescending.hasNext()) {
+            best.add(value.applyAsLong(loadedDescending.next()));
+        }
+        List<LazyDirectoryNode> candidates = new ArrayList<>();
+        for (LazyDirectoryNode dir : directories) {
+            if (!dir.loaded) {
+                candidates.add(dir);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(maximum).reversed());
+        List<LazyDirectoryNode> needed = new ArrayList<>();
+        for (LazyDirectoryNode dir : candidates) {
+            if (best.size() == k && maximum.applyAsLong(dir) <= best.peek()) {
+                break;
+            }
+            // The directory's maximum stands in for its files until they are read below
+            needed.add(dir);
+            best.add(maximum.applyAsLong(dir));
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+        forEachUnloaded(needed, this::load);
+    }
+
+    // Reads in whatever is not in memory yet, for consumers that need every file
+    void loadAll() {
+        forEachUnloaded(directories, this::load);
+    }
+
+    // Reads the files of each directory that is not loaded, through one channel
+    private void forEachUnloaded(List<LazyDirectoryNode> candidates, BiConsumer<LazyDirectoryNode, List<FileNode>> action) {
+        try (FileChannel channel = open()) {
+            for (LazyDirectoryNode dir : candidates) {
+                if (!dir.loaded) {
+                    action.accept(dir, read(dir, channel));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    // The next directory to unload while over the budget, or null. The clock hand gives referenced
+    // directories a second chance; directories that were changed or removed leave the clock here.
+    LazyDirectoryNode nextVictim() {
+        synchronized (clock) {
+            int passes = clock.size() * 2; // every directory once to clear its bit, once to be taken
+            while (loadedFiles.get() > maxLoadedFiles && passes-- > 0) {
+                LazyDirectoryNode dir = clock.pollFirst();
+                if (dir == null) {
+                    return null;
+                }
+                if (dir.referenced && !dir.changed) {
+                    dir.referenced = false;
+                    clock.addLast(dir);
+                    continue;
+                }
+                return dir;
+            }
+            return null;
+        }
+    }
+
+    // Unloads a directory taken from the clock. The caller holds dir's write lock, so no writer
+    // is changing its files; attached is false if dir was removed from the tree meanwhile.
+    void unload(LazyDirectoryNode dir, boolean attached) {
+        synchronized (dir) {
+            loadedFiles.addAndGet(-dir.loadedCount);
+            dir.loadedCount = 0;
+            if (!attached || dir.changed || !dir.loaded) {
+                return;
+            }
+            List<FileNode> unloaded = new ArrayList<>(dir.fileCount);
+            for (TreeNode child = dir.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child instanceof FileNode) {
+                    unloaded.add((FileNode) child);
+                }
+            }
+            for (FileNode file : unloaded) {
+                dir.unlink(file);
+            }
+            dir.loaded = false;
+            for (FileNode file : unloaded) {
+                fileSystem.fireUnloaded(dir, file);
+            }
+        }
+    }
+
+    // Opens the manifest for positioned reads and checks that it is still the one that was scanned
+    private FileChannel open() throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (channel.size() != length || Files.getLastModifiedTime(path).toMillis() != lastModified) {
+            channel.close();
+            throw new IOException("the manifest has changed since it was loaded");
+        }
+        return channel;
+    }
+
+    private List<FileNode> read(LazyDirectoryNode dir, FileChannel channel) throws IOException {
+        List<FileNode> read = new ArrayList<>(dir.fileCount);
+        FileSystemLoader loader = new FileSystemLoader(new Collector(dir, read));
+        long[] runs = dir.runs;
+        for (int i = 0; i < runs.length; i += 2) {
+            ByteBuffer bytes = ByteBuffer.allocate((int) (runs[i + 1] - runs[i]));
+            long position = runs[i];
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, position + bytes.position()) < 0) {
+                    throw new IOException("unexpected end of file");
+                }
+            }
+            loader.loadBelow(dir, dir.level, rootLine, new ByteArrayInputStream(bytes.array()));
+        }
+        if (read.size() != dir.fileCount) {
+            throw new IOException("expected " + dir.fileCount + " files but read " + read.size());
+        }
+        return read;
+    }
+
+    static String extension(String name) {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    // Builds the directories and records their file lines, without creating FileNodes for them.
+    // Duplicate file names are detected with a name set per open directory, which is dropped as soon
+    // as the directory can have no more lines, so memory stays bounded by the widest directory.
+    private final class Scanner implements FileSystemLoader.Sink {
+        private final DirectoryNode root;
+        private Set<String>[] names = newNameSets(16);
+        private long lineStart;
+        private long lineEnd;
+
+        Scanner(DirectoryNode root) {
+            this.root = root;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Set<String>[] newNameSets(int n) {
+            return (Set<String>[]) new Set[n];
+        }
+
+        @Override
+        public Object root() {
+            return root;
+        }
+
+        @Override
+        public void position(long start, long end) {
+            lineStart = start;
+            lineEnd = end;
+        }
+
+        @Override
+        public Object directory(Object parent, String name, long lastModified) {
+            int level = parent == root ? 1 : ((LazyDirectoryNode) parent).level + 1;
+            LazyDirectoryNode dir = new LazyDirectoryNode(LazyManifest.this, name, new Date(lastModified), level);
+            if (!((DirectoryNode) parent).attachChild(dir)) {
+                return null;
+            }
+            directories.add(dir);
+            if (parent == root) {
+                topLevel.add(dir);
+            }
+            if (level >= names.length) {
+                names = Arrays.copyOf(names, level * 2);
+            }
+            // Directories at this level and below are finished
+            for (int i = level; i < names.length && names[i] != null; i++) {
+                names[i] = null;
+            }
+            names[level] = new HashSet<>();
+            return dir;
+        }
+
+        @Override
+        public boolean file(Object parent, String name, long lastModified, long size, AccessLevel accessLevel) {
+            if (parent == root) {
+                FileNode file = new FileNode(name, extension(name), new Date(lastModified), size, accessLevel);
+                if (!root.attachChild(file)) {
+                    return false;
+                }
+                topLevel.add(file);
+                return true;
+            }
+            LazyDirectoryNode dir = (LazyDirectoryNode) parent;
+            if (!names[dir.level].add(name)) {
+                return false;
+            }
+            dir.addRun(lineStart, lineEnd);
+            dir.summarize(NameIndex.foldCase(name), NameIndex.foldCase(extension(name)), size, lastModified);
+            dir.fileCount++;
+            dir.fileBytes += size;
+            if (accessLevel == AccessLevel.SYSTEM) {
+                dir.systemFiles++;
+            }
+            dir.fileHash += ContentHash.file(name, extension(name), size, lastModified, accessLevel);
+            files.addFile(extension(name), size, accessLevel, dir.level + 1);
+            return true;
+        }
+
+        // Aggregates bottom-up, from each directory's file totals and its subdirectories
+        @Override
+        public void finish() {
+            names = null;
+            for (int i = directories.size() - 1; i >= 0; i--) {
+                LazyDirectoryNode dir = directories.get(i);
+                dir.sealSummary();
+                long size = dir.fileBytes;
+                long descendants = dir.fileCount;
+                long systemDescendants = dir.systemFiles;
+                int systemChildren = dir.systemFiles;
+                long latest = dir.maxFileDate;
+                int children = dir.fileCount;
+                long hash = dir.fileHash;
+                for (TreeNode child = dir.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    DirectoryNode sub = (DirectoryNode) child;
+                    hash += ContentHash.of(sub);
+                    size += sub.getSize();
+                    descendants += sub.getDescendantCount() + 1;
+                    systemDescendants += sub.getSystemDescendantCount();
+                    if (sub.getAccessLevel() == AccessLevel.SYSTEM) {
+                        systemChildren++;
+                        systemDescendants++;
+                    }
+                    latest = Math.max(latest, sub.getLastModified().getTime());
+                    children++;
+                }
+                dir.restoreAggregates(size, children == 0 ? dir.getOwnLastModified() : new Date(latest),
+                        children == 0 ? dir.getOwnAccessLevel() : systemChildren == children ? AccessLevel.SYSTEM : AccessLevel.USER,
+                        systemChildren, descendants, systemDescendants);
+                dir.restoreContentHash(hash);
+            }
+            root.recalculateProperties();
+        }
+    }
+
+    // Collects the files of one directory read back from its runs
+    private static final class Collector implements FileSystemLoader.Sink {
+        private final LazyDirectoryNode dir;
+        private final List<FileNode> read;
+
+        Collector(LazyDirectoryNode dir, List<FileNode> read) {
+            this.dir = dir;
+            this.read = read;
+        }
+
+        @Override
+        public Object root() {
+            return dir;
+        }
+
+        @Override
+        public Object directory(Object parent, String name, long lastModified) {
+            throw new IllegalStateException("directory line among the files of " + dir.getName());
+        }
+
+        @Override
+        public boolean file(Object parent, String name, long lastModified, long size, AccessLevel accessLevel) {
+            read.add(new FileNode(name, extension(name), new Date(lastModified), size, accessLevel));
+            return true;
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+}
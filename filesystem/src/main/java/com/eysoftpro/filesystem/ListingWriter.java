@@ -0,0 +1,103 @@
+package com.eysoftpro.filesystem;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+
+// Writes nodes in the printDetails format, one line each, indented by depth. Every line is built
+// in the same buffer and copied straight into the writer's buffer, so a listing makes no strings
+// per node. Date.toString looks up the time zone and formats from a calendar on each call, so the
+// date strings are kept in a small cache, by second: manifest dates repeat a lot.
+// Callers that write a whole listing synchronize on the writer to keep it together.
+public class ListingWriter {
+    private static final int DATE_CACHE_SLOTS = 1024; // direct-mapped, by a hash of the second
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static ListingWriter console;
+    private static PrintStream consoleStream;
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder(128);
+    private char[] chars = new char[128];
+    private final long[] cachedSeconds = new long[DATE_CACHE_SLOTS];
+    private final String[] cachedDates = new String[DATE_CACHE_SLOTS];
+
+    public ListingWriter(Writer out) {
+        this.out = out instanceof BufferedWriter || out instanceof PrintWriter ? out : new BufferedWriter(out, BUFFER_SIZE);
+    }
+
+    // The writer for System.out, shared by every listing; made again if System.out is replaced
+    static synchronized ListingWriter console() {
+        if (console == null || consoleStream != System.out) {
+            consoleStream = System.out;
+            console = new ListingWriter(new OutputStreamWriter(consoleStream, consoleCharset()));
+        }
+        return console;
+    }
+
+    // What System.out encodes with (stdout.encoding is only set on newer JVMs)
+    private static Charset consoleCharset() {
+        String name = System.getProperty("stdout.encoding", System.getProperty("sun.stdout.encoding"));
+        try {
+            return name != null ? Charset.forName(name) : Charset.defaultCharset();
+        } catch (IllegalArgumentException e) {
+            return Charset.defaultCharset();
+        }
+    }
+
+    public synchronized void write(TreeNode node, int depth) {
+        line.setLength(0);
+        for (int i = 0; i < depth; i++) {
+            line.append("  ");
+        }
+        appendDetails(node, formatDate(node.getLastModified().getTime()), line).append(System.lineSeparator());
+        int length = line.length();
+        if (length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(length, chars.length * 2));
+        }
+        line.getChars(0, length, chars, 0);
+        try {
+            out.write(chars, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String formatDate(long millis) {
+        long second = Math.floorDiv(millis, 1000);
+        int slot = (int) ((second * 0x9E3779B97F4A7C15L) >>> 54); // 10 bits: DATE_CACHE_SLOTS
+        String date = cachedDates[slot];
+        if (date == null || cachedSeconds[slot] != second) {
+            date = new Date(millis).toString();
+            cachedDates[slot] = date;
+            cachedSeconds[slot] = second;
+        }
+        return date;
+    }
+
+    // A node's own line, as printDetails writes a file and printSummary a directory
+    static StringBuilder appendDetails(TreeNode node, String date, StringBuilder out) {
+        if (node instanceof DirectoryNode) {
+            out.append("Directory: ").append(node.getName());
+        } else {
+            out.append("File: ").append(node.getName()).append('.').append(((FileNode) node).getExtension());
+        }
+        return out.append(" | ").append(node.getSize()).append(" bytes | Last Modified: ").append(date)
+                .append(" | Access Level: ").append(node.getAccessLevel());
+    }
+}
@@ -0,0 +1,330 @@
+package com.eysoftpro.filesystem;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.List;
+import java.util.Scanner;
+
+// Without arguments Main runs the interactive menu. Headless modes (see CommandProcessor for the
+// commands):
+//   --script <file>   runs the commands in the file ("-" for standard input); exits with status 1
+//                     if any command failed
+//   --serve <port>    serves the commands over TCP on the loopback address until killed; changes to
+//                     myfiles.txt are picked up while serving (see FileSystemWatcher)
+//   --lazy            runs the menu on myfiles.txt loaded lazily (see LazyManifest), with at most
+//                     LAZY_LOADED_FILES files in memory; there is no snapshot or journal then
+// Directories imported from disk in the menu are watched and refreshed in the background.
+public class Main {
+    private static final long LAZY_LOADED_FILES = 1_000_000;
+
+    private static FileSystemWatcher watcher;
+
+    public static void main(String[] args) {
+
+        FileSystem fileSystem = new FileSystem();
+        fileSystem.enableMetrics();
+        boolean headless = args.length >= 2 && (args[0].equals("--script") || args[0].equals("--serve"));
+        boolean lazy = args.length == 1 && args[0].equals("--lazy");
+        try {
+            if (lazy) {
+                fileSystem.loadFromFileSystemLazily("myfiles.txt", LAZY_LOADED_FILES);
+            } else {
+                load(fileSystem, "myfiles.txt", "myfiles.snapshot", "myfiles.journal");
+            }
+            if (!headless) {
+                System.out.println("File system loaded successfully!");
+            }
+        } catch (Exception e) {
+            System.err.println("File system did not load file " + e.getMessage());
+        }
+        if (!lazy) {
+            // Without the journal, changes would not survive the process, so none are accepted
+            try {
+                fileSystem.openJournal("myfiles.journal", "myfiles.snapshot");
+            } catch (IOException e) {
+                System.err.println("Could not open journal myfiles.journal: " + e.getMessage());
+                System.exit(2);
+            }
+        }
+        if (headless) {
+            try {
+                int status = args[0].equals("--script") ? runScript(fileSystem, args[1]) : serve(fileSystem, Integer.parseInt(args[1]));
+                fileSystem.closeJournal();
+                System.exit(status);
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                System.exit(2);
+            }
+        }
+        Scanner scanner = new Scanner(System.in);
+        while (true) {
+            System.out.println("\n--- File System Menu ---");
+            System.out.println("1. Add Directory");
+            System.out.println("2. Add File");
+            System.out.println("3. Remove Directory");
+            System.out.println("4. Remove File");
+            System.out.println("5. Search by Name");
+            System.out.println("6. Search by Extension");
+            // System.out.println("7. Display Path");
+            System.out.println("8. List Contents");
+            System.out.println("9. Display File System");
+            System.out.println("10. Show Metrics");
+            System.out.println("11. Import Directory From Disk");
+            System.out.println("0. Exit");
+
+            System.out.print("Enter your choice: ");
+            int choice = scanner.nextInt();
+            scanner.nextLine(); // Consume newline
+            try {
+                switch (choice) {
+                    case 1 -> addDirectory(fileSystem, scanner);
+                    case 2 -> addFile(fileSystem, scanner);
+                    case 3 -> removeDirectory(fileSystem, scanner);
+                    case 4 -> removeFile(fileSystem, scanner);
+                    case 5 -> searchByName(fileSystem, scanner);
+                    case 6 -> searchByExtension(fileSystem, scanner);
+                    //case 7 -> displayPath(fileSystem, scanner);
+                    case 8 -> listContents(fileSystem, scanner);
+                    case 9 -> fileSystem.displayFileSystem();
+                    case 10 -> System.out.print(fileSystem.dumpMetrics());
+                    case 11 -> importFromDisk(fileSystem, scanner);
+                    case 0 -> {
+                        fileSystem.closeJournal();
+                        System.out.println("Exiting...");
+                        return;
+                    }
+                    default -> System.out.println("Invalid choice. Please try again.");
+                }
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+            }
+        }
+    }
+
+    // Output goes through one buffer and is flushed at the end, not per line
+    private static int runScript(FileSystem fileSystem, String script) throws IOException {
+        CommandProcessor processor = new CommandProcessor(fileSystem);
+        int status = 0;
+        try (Reader source = script.equals("-") ? new InputStreamReader(System.in) : new FileReader(script);
+             BufferedReader in = new BufferedReader(source, 1 << 16);
+             PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                CommandProcessor.Status result = processor.execute(line, out);
+                if (result == CommandProcessor.Status.QUIT) {
+                    break;
+                }
+                if (result == CommandProcessor.Status.FAILED) {
+                    status = 1;
+                }
+            }
+            out.flush();
+        }
+        return status;
+    }
+
+    private static int serve(FileSystem fileSystem, int port) throws IOException, InterruptedException {
+        // The server runs until the process is killed or fails to start serving; either way main
+        // exits, so the shutdown hook is the one place that closes it
+        CommandServer server = new CommandServer(fileSystem, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+                fileSystem.closeJournal();
+            } catch (IOException e) {
+                System.err.println("Error: " + e.getMessage());
+            }
+        }));
+        try (FileSystemWatcher manifestWatcher = new FileSystemWatcher(fileSystem)) {
+            if (new File("myfiles.txt").isFile()) {
+                manifestWatcher.watchManifest(Paths.get("myfiles.txt"));
+                manifestWatcher.start();
+            }
+            System.err.println("Serving on 127.0.0.1:" + server.getPort());
+            server.awaitTermination();
+        }
+        return 0;
+    }
+
+    // Starts from the binary snapshot, while it is newer than the text manifest; the changes journaled
+    // since are replayed when main opens the journal. Otherwise, or if the snapshot cannot be read,
+    // the manifest is parsed, and the old snapshot and journal are replaced: they were based on an
+    // older manifest, or on a snapshot that is lost. A snapshot that cannot be read is kept as
+    // <snapshot>.bad.
+    static void load(FileSystem fileSystem, String manifest, String snapshot, String journal) throws IOException {
+        File snapshotFile = new File(snapshot);
+        if (snapshotFile.isFile() && snapshotFile.lastModified() >= new File(manifest).lastModified()) {
+            try {
+                fileSystem.loadSnapshot(snapshot);
+                return;
+            } catch (IOException e) {
+                System.err.println("Could not read snapshot " + snapshot + ", loading " + manifest + " instead: " + e.getMessage());
+                Files.move(snapshotFile.toPath(), Paths.get(snapshot + ".bad"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        try {
+            fileSystem.loadFromFileSystem(manifest);
+        } finally {
+            new File(journal).delete(); // its records do not apply to the manifest, parsed or not
+        }
+        try {
+            fileSystem.saveSnapshot(snapshot);
+        } catch (IOException e) {
+            System.err.println("Could not write snapshot " + snapshot + ": " + e.getMessage());
+        }
+    }
+
+    private static void addDirectory(FileSystem fileSystem, Scanner scanner) {
+        System.out.print("Enter parent directory path: ");
+        String path = scanner.nextLine();
+        System.out.print("Enter directory name: ");
+        String name = scanner.nextLine();
+        System.out.print("Enter access level (USER/SYSTEM): ");
+        String accessLevel = scanner.nextLine();
+
+        try {
+            fileSystem.addDirectory(path, name, accessLevel);
+            System.out.println("Directory added successfully.");
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static void addFile(FileSystem fileSystem, Scanner scanner) {
+        System.out.print("Enter parent directory path: ");
+        String path = scanner.nextLine();
+        System.out.print("Enter file name: ");
+        String name = scanner.nextLine();
+        System.out.print("Enter file extension: ");
+        String extension = scanner.nextLine();
+        System.out.print("Enter file size (in bytes): ");
+        long size = scanner.nextLong();
+        scanner.nextLine(); // Consume newline
+        System.out.print("Enter access level (USER/SYSTEM): ");
+        String accessLevel = scanner.nextLine();
+        Date lastModified = new Date();
+
+        try {
+            fileSystem.addFile(path, name, extension, size, accessLevel, lastModified);
+            System.out.println("File added successfully.");
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static void removeDirectory(FileSystem fileSystem, Scanner scanner) {
+        System.out.print("Enter parent directory path: ");
+        String path = scanner.nextLine();
+        System.out.print("Enter directory name: ");
+        String name = scanner.nextLine();
+
+        try {
+            fileSystem.removeDirectory(path, name);
+            System.out.println("Directory removed successfully.");
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static void removeFile(FileSystem fileSystem, Scanner scanner) {
+        System.out.print("Enter parent directory path: ");
+        String path = scanner.nextLine();
+        System.out.print("Enter file name: ");
+        String name = scanner.nextLine();
+
+        try {
+            fileSystem.removeFile(path, name);
+            System.out.println("File removed successfully.");
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static void searchByName(FileSystem fileSystem, Scanner scanner) {
+        System.out.print("Enter name to search: ");
+        String name = scanner.nextLine();
+
+        List<TreeNode> results = fileSystem.searchByName(name);
+        if (results.isEmpty()) {
+            System.out.println("No items found.");
+        } else {
+            System.out.println("Found items:");
+            for (TreeNode path : results) {
+                System.out.println(path);
+            }
+        }
+    }
+
+    private static void searchByExtension(FileSystem fileSystem, Scanner scanner) {
+        System.out.print("Enter file extension to search: ");
+        String extension = scanner.nextLine();
+
+        List<FileNode> results = fileSystem.searchByExtension(extension);
+        if (results.isEmpty()) {
+            System.out.println("No items found.");
+        } else {
+            System.out.println("Found files:");
+            for (FileNode path : results) {
+                System.out.println(path);
+            }
+        }
+    }
+
+    private static void importFromDisk(FileSystem fileSystem, Scanner scanner) {
+        System.out.print("Enter parent directory path: ");
+        String path = scanner.nextLine();
+        System.out.print("Enter directory on disk: ");
+        String directory = scanner.nextLine();
+
+        try {
+            DiskScanner diskScanner = new DiskScanner();
+            fileSystem.importFromDisk(path, directory, diskScanner);
+            if (watcher == null) {
+                watcher = new FileSystemWatcher(fileSystem);
+                watcher.start();
+            }
+            Path disk = Paths.get(directory);
+            watcher.watchDirectory((path.endsWith("/") ? path : path + "/") + disk.getFileName(), disk);
+            System.out.printf("Imported %d entries in %d ms (%.0f entries/s, %d errors)%s%n",
+                    diskScanner.getEntries(), diskScanner.getElapsedNanos() / 1_000_000, diskScanner.getEntriesPerSecond(),
+                    diskScanner.getErrors(), diskScanner.isTruncated() ? ", stopped at the entry limit" : "");
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static void listContents(FileSystem fileSystem, Scanner scanner) {
+        System.out.print("Enter directory path: ");
+        String path = scanner.nextLine();
+
+        try {
+            fileSystem.listContents(path);
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
+   /* private static void displayPath(FileSystem fileSystem, Scanner scanner) {
+        System.out.print("Enter name of file or directory: ");
+         name = scanner.nextLine();
+
+        try {
+            String path = fileSystem.displayPath(name);
+            System.out.println("Path: " + path);
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+*/
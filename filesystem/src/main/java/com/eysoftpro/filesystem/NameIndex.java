@@ -0,0 +1,176 @@
+package com.eysoftpro.filesystem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+// Case-insensitive name -> nodes index behind FileSystem.searchByName and the pattern searches.
+// Each distinct folded name is a key; the same node sets are also kept in key order for prefix
+// ranges, and the keys' trigrams narrow substring and glob queries down to a few candidates.
+public class NameIndex implements FileSystemListener {
+    // Keys are created and dropped inside byName.compute, which serializes writers on the same key
+    private final ConcurrentHashMap<String, Set<TreeNode>> byName = new ConcurrentHashMap<>();
+    private final NavigableMap<String, Set<TreeNode>> sortedNames = new ConcurrentSkipListMap<>();
+    private final TrigramIndex trigrams = new TrigramIndex();
+
+    @Override
+    public void nodeAdded(TreeNode node) {
+        TreeTraversal.forEach(node, n -> byName.compute(foldCase(n.getName()), (key, nodes) -> {
+            if (nodes == null) {
+                nodes = ConcurrentHashMap.newKeySet();
+                sortedNames.put(key, nodes);
+                trigrams.add(key);
+            }
+            nodes.add(n);
+            return nodes;
+        }));
+    }
+
+    @Override
+    public void nodeRemoved(DirectoryNode parent, TreeNode node) {
+        TreeTraversal.forEach(node, n -> byName.computeIfPresent(foldCase(n.getName()), (key, nodes) -> {
+            if (nodes.remove(n) && nodes.isEmpty()) {
+                sortedNames.remove(key);
+                trigrams.remove(key);
+                return null;
+            }
+            return nodes;
+        }));
+    }
+
+    public Collection<TreeNode> find(String name) {
+        Set<TreeNode> nodes = byName.get(foldCase(name));
+        return nodes != null ? Collections.unmodifiableSet(nodes) : Collections.emptySet();
+    }
+
+    // The pattern searches below are lazy: nodes are produced as the iterator is advanced
+
+    public Iterator<TreeNode> findByPrefix(String prefix) {
+        String key = foldCase(prefix);
+        return new Expander(sortedNames.tailMap(key, true).keySet().iterator(), name -> name.startsWith(key), true);
+    }
+
+    public Iterator<TreeNode> findContaining(String text) {
+        String key = foldCase(text);
+        Set<String> candidates = trigrams.candidates(List.of(key));
+        Iterator<String> names = (candidates != null ? candidates : sortedNames.keySet()).iterator();
+        return new Expander(names, name -> name.contains(key), false);
+    }
+
+    // '*' matches any run of characters and '?' exactly one
+    public Iterator<TreeNode> findByGlob(String pattern) {
+        String glob = foldCase(pattern);
+        List<String> literals = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= glob.length(); i++) {
+            if (i == glob.length() || glob.charAt(i) == '*' || glob.charAt(i) == '?') {
+                if (i > start) {
+                    literals.add(glob.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        Predicate<String> matches = name -> globMatches(glob, name);
+        Set<String> candidates = trigrams.candidates(literals);
+        if (candidates != null) {
+            return new Expander(candidates.iterator(), matches, false);
+        }
+        int wildcard = 0;
+        while (wildcard < glob.length() && glob.charAt(wildcard) != '*' && glob.charAt(wildcard) != '?') wildcard++;
+        if (wildcard > 0) {
+            // Literal lead-in, so only the matching key range is scanned
+            String prefix = glob.substring(0, wildcard);
+            Iterator<String> names = sortedNames.tailMap(prefix, true).keySet().iterator();
+            return new Expander(names, name -> name.startsWith(prefix), true, matches);
+        }
+        return new Expander(sortedNames.keySet().iterator(), matches, false);
+    }
+
+    static boolean globMatches(String glob, String name) {
+        int g = 0, n = 0, star = -1, resume = 0;
+        while (n < name.length()) {
+            if (g < glob.length() && (glob.charAt(g) == '?' || (glob.charAt(g) != '*' && glob.charAt(g) == name.charAt(n)))) {
+                g++;
+                n++;
+            } else if (g < glob.length() && glob.charAt(g) == '*') {
+                star = g++;
+                resume = n;
+            } else if (star >= 0) {
+                g = star + 1;
+                n = ++resume;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') g++;
+        return g == glob.length();
+    }
+
+    // Turns matching keys into their nodes. With sortedRange the keys come in order and the
+    // first key failing inRange ends the iteration; otherwise non-matching keys are skipped.
+    private class Expander implements Iterator<TreeNode> {
+        private final Iterator<String> keys;
+        private final Predicate<String> inRange;
+        private final boolean sortedRange;
+        private final Predicate<String> matches;
+        private Iterator<TreeNode> current = Collections.emptyIterator();
+
+        Expander(Iterator<String> keys, Predicate<String> matches, boolean sortedRange) {
+            this(keys, matches, sortedRange, matches);
+        }
+
+        Expander(Iterator<String> keys, Predicate<String> inRange, boolean sortedRange, Predicate<String> matches) {
+            this.keys = keys;
+            this.inRange = inRange;
+            this.sortedRange = sortedRange;
+            this.matches = matches;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && keys.hasNext()) {
+                String key = keys.next();
+                if (!inRange.test(key)) {
+                    if (sortedRange) break;
+                    continue;
+                }
+                Set<TreeNode> nodes = byName.get(key);
+                if (nodes != null && matches.test(key)) {
+                    current = nodes.iterator();
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public TreeNode next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+
+    // Two strings fold to the same key exactly when String.equalsIgnoreCase says they are equal
+    static String foldCase(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.toLowerCase(Character.toUpperCase(c)) != c) {
+                char[] folded = s.toCharArray();
+                for (int j = i; j < folded.length; j++) {
+                    folded[j] = Character.toLowerCase(Character.toUpperCase(folded[j]));
+                }
+                return new String(folded);
+            }
+        }
+        return s;
+    }
+}
@@ -0,0 +1,77 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bounded cache of resolved directory paths that never locks on lookup. Entries remember when they
+// were last used, and when the cache overflows one thread evicts the least recently used quarter.
+// invalidate() also moves to a new generation, so a path resolved before a directory removal is
+// ignored even if it is stored after the removal.
+public class PathCache {
+    private final int capacity;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private volatile long clock; // Racy increments only blur the usage order a little
+
+    public PathCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // Read before resolving a path and pass it to put()
+    public int generation() {
+        return generation.get();
+    }
+
+    public DirectoryNode get(String path) {
+        Entry entry = entries.get(path);
+        if (entry == null || entry.generation != generation.get()) {
+            return null;
+        }
+        entry.lastUsed = ++clock;
+        return entry.directory;
+    }
+
+    public void put(String path, DirectoryNode directory, int resolvedInGeneration) {
+        entries.put(path, new Entry(directory, resolvedInGeneration, ++clock));
+        if (entries.size() > capacity && evicting.compareAndSet(false, true)) {
+            try {
+                evictOldest(entries.size() - capacity * 3 / 4);
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    private void evictOldest(int count) {
+        long[] ages = new long[entries.size()];
+        int n = 0;
+        for (Entry entry : entries.values()) {
+            if (n == ages.length) break;
+            ages[n++] = entry.lastUsed;
+        }
+        if (count <= 0 || n == 0) return;
+        Arrays.sort(ages, 0, n);
+        long cutoff = ages[Math.min(count, n) - 1];
+        entries.values().removeIf(entry -> entry.lastUsed <= cutoff);
+    }
+
+    private static final class Entry {
+        final DirectoryNode directory;
+        final int generation;
+        volatile long lastUsed;
+
+        Entry(DirectoryNode directory, int generation, long lastUsed) {
+            this.directory = directory;
+            this.generation = generation;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Arrays;
+
+// One immutable node of a FileSystemVersion. A directory keeps its children in an array sorted by
+// name (a file before a directory of the same name) and computes its aggregates once, when it is
+// built. A change rebuilds only the directories on the path to it; every other subtree is shared
+// with the version before.
+final class PersistentNode {
+    static final PersistentNode[] NO_CHILDREN = new PersistentNode[0];
+
+    final String name;
+    final boolean directory;
+    final String extension; // files only; interned, as it comes from FileNode.getExtension
+    final long size;
+    final long lastModified;
+    final AccessLevel accessLevel;
+    final PersistentNode[] children;
+    final long descendants;
+    final long systemDescendants;
+    final long contentHash; // directories only: sum of the children's hashes
+    final long hash; // see ContentHash
+    // A directory's own values, which apply while it is empty
+    final AccessLevel ownAccessLevel;
+    final long ownLastModified;
+
+    private PersistentNode(String name, String extension, long size, long lastModified, AccessLevel accessLevel) {
+        this.name = name;
+        this.directory = false;
+        this.extension = extension;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.accessLevel = accessLevel;
+        this.children = NO_CHILDREN;
+        this.descendants = 0;
+        this.systemDescendants = 0;
+        this.ownAccessLevel = accessLevel;
+        this.ownLastModified = lastModified;
+        this.contentHash = 0;
+        this.hash = ContentHash.file(name, extension, size, lastModified, accessLevel);
+    }
+
+    private PersistentNode(String name, AccessLevel ownAccessLevel, long ownLastModified, PersistentNode[] children) {
+        long totalSize = 0;
+        long nodes = 0;
+        long systemNodes = 0;
+        int systemChildren = 0;
+        long latest = Long.MIN_VALUE;
+        long childHashes = 0;
+        for (PersistentNode child : children) {
+            totalSize += child.size;
+            childHashes += child.hash;
+            nodes += child.descendants + 1;
+            systemNodes += child.systemDescendants;
+            if (child.accessLevel == AccessLevel.SYSTEM) {
+                systemChildren++;
+                systemNodes++;
+            }
+            latest = Math.max(latest, child.lastModified);
+        }
+        this.name = name;
+        this.directory = true;
+        this.extension = null;
+        this.size = totalSize;
+        this.lastModified = children.length == 0 ? ownLastModified : latest;
+        this.accessLevel = children.length == 0 ? ownAccessLevel
+                : systemChildren == children.length ? AccessLevel.SYSTEM : AccessLevel.USER;
+        this.children = children;
+        this.descendants = nodes;
+        this.systemDescendants = systemNodes;
+        this.ownAccessLevel = ownAccessLevel;
+        this.ownLastModified = ownLastModified;
+        this.contentHash = childHashes;
+        this.hash = ContentHash.directory(name, childHashes);
+    }
+
+    static PersistentNode file(String name, String extension, long size, long lastModified, AccessLevel accessLevel) {
+        return new PersistentNode(name, extension, size, lastModified, accessLevel);
+    }
+
+    // children must be sorted (see compare)
+    static PersistentNode directory(String name, AccessLevel ownAccessLevel, long ownLastModified, PersistentNode[] children) {
+        return new PersistentNode(name, ownAccessLevel, ownLastModified, children);
+    }
+
+    // Immutable copy of a live subtree. Children are converted before their parents, with an
+    // explicit stack, so tree depth never touches the call stack.
+    static PersistentNode copyOf(TreeNode live) {
+        if (live instanceof FileNode) {
+            FileNode file = (FileNode) live;
+            return file(file.getName(), file.getExtension(), file.getSize(), file.getLastModified().getTime(), file.getAccessLevel());
+        }
+        DirectoryNode[] open = new DirectoryNode[16];
+        PersistentNode[][] built = new PersistentNode[16][];
+        int[] filled = new int[16];
+        int depth = 0;
+        open[0] = (DirectoryNode) live;
+        built[0] = new PersistentNode[open[0].getChildCount()];
+        TreeNode next = open[0].getFirstChild();
+        while (true) {
+            if (next == null) {
+                // All children of open[depth] are done
+                DirectoryNode dir = open[depth];
+                PersistentNode[] children = Arrays.copyOf(built[depth], filled[depth]);
+                Arrays.sort(children, PersistentNode::compare);
+                PersistentNode node = directory(dir.getName(), ownAccessLevel(dir), ownLastModified(dir), children);
+                TreeNode resume = dir.getNextSibling();
+                if (depth == 0) {
+                    return node;
+                }
+                depth--;
+                add(built, filled, depth, node);
+                next = resume;
+            } else if (next instanceof FileNode) {
+                FileNode file = (FileNode) next;
+                add(built, filled, depth, file(file.getName(), file.getExtension(), file.getSize(),
+                        file.getLastModified().getTime(), file.getAccessLevel()));
+                next = next.getNextSibling();
+            } else {
+                DirectoryNode dir = (DirectoryNode) next;
+                depth++;
+                if (depth == open.length) {
+                    open = Arrays.copyOf(open, depth * 2);
+                    built = Arrays.copyOf(built, depth * 2);
+                    filled = Arrays.copyOf(filled, depth * 2);
+                }
+                open[depth] = dir;
+                built[depth] = new PersistentNode[dir.getChildCount()];
+                filled[depth] = 0;
+                next = dir.getFirstChild();
+            }
+        }
+    }
+
+    private static void add(PersistentNode[][] built, int[] filled, int depth, PersistentNode node) {
+        if (filled[depth] == built[depth].length) {
+            built[depth] = Arrays.copyOf(built[depth], filled[depth] * 2 + 1);
+        }
+        built[depth][filled[depth]++] = node;
+    }
+
+    private static AccessLevel ownAccessLevel(DirectoryNode dir) {
+        return dir.getOwnAccessLevel() != null ? dir.getOwnAccessLevel() : dir.getAccessLevel();
+    }
+
+    private static long ownLastModified(DirectoryNode dir) {
+        return (dir.getOwnLastModified() != null ? dir.getOwnLastModified() : dir.getLastModified()).getTime();
+    }
+
+    // Index of the child, or -(insertion point) - 1 if there is none
+    int indexOf(String childName, boolean childDirectory) {
+        int low = 0;
+        int high = children.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int c = compare(children[middle], childName, childDirectory);
+            if (c < 0) {
+                low = middle + 1;
+            } else if (c > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    PersistentNode child(String childName, boolean childDirectory) {
+        int index = indexOf(childName, childDirectory);
+        return index >= 0 ? children[index] : null;
+    }
+
+    // This directory with child added, or put in place of the child of the same name and kind
+    PersistentNode withChild(PersistentNode child) {
+        int index = indexOf(child.name, child.directory);
+        PersistentNode[] copy;
+        if (index >= 0) {
+            copy = children.clone();
+            copy[index] = child;
+        } else {
+            index = -index - 1;
+            copy = new PersistentNode[children.length + 1];
+            System.arraycopy(children, 0, copy, 0, index);
+            copy[index] = child;
+            System.arraycopy(children, index, copy, index + 1, children.length - index);
+        }
+        return directory(name, ownAccessLevel, ownLastModified, copy);
+    }
+
+    PersistentNode withoutChild(String childName, boolean childDirectory) {
+        int index = indexOf(childName, childDirectory);
+        if (index < 0) {
+            return this;
+        }
+        PersistentNode[] copy = new PersistentNode[children.length - 1];
+        System.arraycopy(children, 0, copy, 0, index);
+        System.arraycopy(children, index + 1, copy, index, copy.length - index);
+        return directory(name, ownAccessLevel, ownLastModified, copy);
+    }
+
+    static int compare(PersistentNode a, PersistentNode b) {
+        return compare(a, b.name, b.directory);
+    }
+
+    private static int compare(PersistentNode node, String otherName, boolean otherDirectory) {
+        int c = node.name.compareTo(otherName);
+        return c != 0 ? c : Boolean.compare(node.directory, otherDirectory);
+    }
+}
@@ -0,0 +1,36 @@
+package com.eysoftpro.filesystem;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Emitted by FileSystem for operations slower than its slow-operation threshold, while a JFR
+// recording has the event enabled (it is by default). The event is created once the operation has
+// finished, so its own start time is the end of the operation and elapsed holds how long it took.
+@Name("com.eysoftpro.filesystem.SlowOperation")
+@Label("Slow File System Operation")
+@Category("File System")
+@Description("A FileSystem operation that took longer than the configured threshold")
+@StackTrace(false)
+public class SlowOperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Argument")
+    @Description("Path, name or pattern the operation was called with")
+    String argument;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    @Label("Nodes Visited")
+    long visited;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,108 @@
+package com.eysoftpro.filesystem;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// The changes that turn one tree into another. Directories with equal content hashes (see
+// ContentHash) are skipped without looking inside, so the cost is the number of changed
+// directories times their fan-out, not the size of the trees. Changes are produced as they are
+// found: one directory's worth at a time, with pending directory pairs on an explicit stack.
+// An added or removed directory is one change, with its whole subtree; a file whose size, date,
+// extension or access level differ is CHANGED. Trees changed while they are compared may be
+// reported partly old and partly new.
+public final class TreeDiff implements Iterator<TreeDiff.Change> {
+    public enum Kind { ADDED, REMOVED, CHANGED }
+
+    public static final class Change {
+        private final Kind kind;
+        private final TreeNode before;
+        private final TreeNode after;
+
+        Change(Kind kind, TreeNode before, TreeNode after) {
+            this.kind = kind;
+            this.before = before;
+            this.after = after;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        // null when ADDED
+        public TreeNode getBefore() {
+            return before;
+        }
+
+        // null when REMOVED
+        public TreeNode getAfter() {
+            return after;
+        }
+
+        // The node as it is now, or as it was if it was removed
+        public TreeNode getNode() {
+            return after != null ? after : before;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + getNode().getFullPath();
+        }
+    }
+
+    private final ArrayDeque<DirectoryNode[]> pending = new ArrayDeque<>(); // {before, after}
+    private final ArrayDeque<Change> found = new ArrayDeque<>();
+
+    private TreeDiff(DirectoryNode before, DirectoryNode after) {
+        if (before.getContentHash() != after.getContentHash()) {
+            pending.push(new DirectoryNode[]{before, after});
+        }
+    }
+
+    // Changes from before to after, which are usually the roots of two trees
+    public static Iterator<Change> diff(DirectoryNode before, DirectoryNode after) {
+        return new TreeDiff(before, after);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (found.isEmpty() && !pending.isEmpty()) {
+            DirectoryNode[] pair = pending.pop();
+            compare(pair[0], pair[1]);
+        }
+        return !found.isEmpty();
+    }
+
+    @Override
+    public Change next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return found.poll();
+    }
+
+    private void compare(DirectoryNode before, DirectoryNode after) {
+        for (TreeNode child : before.children()) {
+            TreeNode other = counterpart(after, child);
+            if (other == null) {
+                found.add(new Change(Kind.REMOVED, child, null));
+            } else if (child instanceof DirectoryNode) {
+                if (((DirectoryNode) child).getContentHash() != ((DirectoryNode) other).getContentHash()) {
+                    pending.push(new DirectoryNode[]{(DirectoryNode) child, (DirectoryNode) other});
+                }
+            } else if (ContentHash.of(child) != ContentHash.of(other)) {
+                found.add(new Change(Kind.CHANGED, child, other));
+            }
+        }
+        for (TreeNode child : after.children()) {
+            if (counterpart(before, child) == null) {
+                found.add(new Change(Kind.ADDED, null, child));
+            }
+        }
+    }
+
+    // The child of dir with the same name and kind as node
+    private static TreeNode counterpart(DirectoryNode dir, TreeNode node) {
+        return node instanceof DirectoryNode ? dir.getDirectory(node.getName()) : dir.getFile(node.getName());
+    }
+}
@@ -0,0 +1,89 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Date;
+
+// Mutable fields are volatile so FileSystem readers can walk the tree without locks while writers change it
+public abstract class TreeNode {
+    protected String name;
+    protected volatile Date lastModified;
+    protected volatile long size;
+    protected volatile AccessLevel accessLevel;
+    protected volatile DirectoryNode parent; // Parent reference for upward traversal
+    protected volatile TreeNode previousSibling; // Sibling links, maintained by the parent DirectoryNode
+    protected volatile TreeNode nextSibling;
+
+    public TreeNode(String name, Date lastModified, long size, AccessLevel accessLevel) {
+        this.name = name;
+        this.lastModified = lastModified;
+        this.size = size;
+        this.accessLevel = accessLevel;
+    }
+
+    // Abstract methods to be implemented by FileNode and DirectoryNode
+    public abstract void printDetails();
+
+    public String getFullPath() {
+        return appendFullPath(new StringBuilder()).toString();
+    }
+
+    // Writes the full path into a caller-supplied buffer, which can be reused across calls
+    public StringBuilder appendFullPath(StringBuilder out) {
+        return appendNamePath(out);
+    }
+
+    // Writes root/.../name into out. The length is summed on the way up and the names are then
+    // copied back to front, so no intermediate strings are built and nothing is shifted.
+    final StringBuilder appendNamePath(StringBuilder out) {
+        int length = -1;
+        for (TreeNode node = this; node != null; node = node.getParent()) {
+            length += node.getName().length() + 1;
+        }
+        int end = out.length() + length;
+        out.setLength(end);
+        for (TreeNode node = this; node != null; ) {
+            String part = node.getName();
+            for (int i = part.length() - 1; i >= 0; i--) {
+                out.setCharAt(--end, part.charAt(i));
+            }
+            node = node.getParent();
+            if (node != null) {
+                out.setCharAt(--end, '/');
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return getFullPath();
+    }
+
+    // Common methods
+    public String getName() {
+        return name;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public AccessLevel getAccessLevel() {
+        return accessLevel;
+    }
+
+    public void setParent(DirectoryNode parent) {
+        this.parent = parent;
+    }
+
+    public DirectoryNode getParent() {
+        return parent;
+    }
+
+    TreeNode getNextSibling() {
+        return nextSibling;
+    }
+}
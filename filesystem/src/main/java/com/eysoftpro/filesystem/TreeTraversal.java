@@ -0,0 +1,181 @@
+package com.eysoftpro.filesystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Shared traversal engine for whole-subtree operations. Walks keep an explicit stack of sibling
+// cursors, one per level, so tree depth never touches the call stack. Parallel queries fork a
+// ForkJoin task for each subdirectory holding at least PARALLEL_THRESHOLD nodes but no more than half
+// of the current task's subtree, and walk everything else inline; the half rule keeps join nesting
+// logarithmic even on long directory chains. Walks are weakly consistent: nodes added or removed
+// meanwhile may or may not be seen.
+public final class TreeTraversal {
+    static final int PARALLEL_THRESHOLD = 8192;
+
+    // Return false to skip the node's children
+    public interface Visitor {
+        boolean visit(TreeNode node, int depth);
+    }
+
+    // Adds one node to an accumulator
+    public interface Accumulator<A> {
+        void add(A into, TreeNode node, int depth);
+    }
+
+    private TreeTraversal() {
+    }
+
+    // Sequential pre-order walk in child order; depth is 0 for start
+    public static void walk(TreeNode start, Visitor visitor) {
+        if (!visitor.visit(start, 0) || !(start instanceof DirectoryNode)) {
+            return;
+        }
+        TreeNode[] pending = new TreeNode[16]; // pending[d - 1] = next node to visit at depth d
+        pending[0] = ((DirectoryNode) start).getFirstChild();
+        int depth = 1;
+        while (depth > 0) {
+            TreeNode node = pending[depth - 1];
+            if (node == null) {
+                depth--;
+                continue;
+            }
+            pending[depth - 1] = node.getNextSibling();
+            if (visitor.visit(node, depth) && node instanceof DirectoryNode) {
+                if (depth == pending.length) {
+                    pending = Arrays.copyOf(pending, depth * 2);
+                }
+                pending[depth++] = ((DirectoryNode) node).getFirstChild();
+            }
+        }
+    }
+
+    public static void forEach(TreeNode start, Consumer<? super TreeNode> action) {
+        walk(start, (node, depth) -> {
+            action.accept(node);
+            return true;
+        });
+    }
+
+    // Matching nodes in no particular order; the predicate may be called from several threads
+    public static List<TreeNode> findAll(TreeNode start, Predicate<? super TreeNode> predicate) {
+        return run(new FindTask(start, predicate, null));
+    }
+
+    // Stops every task as soon as one of them finds a match
+    public static boolean anyMatch(TreeNode start, Predicate<? super TreeNode> predicate) {
+        return !run(new FindTask(start, predicate, new AtomicBoolean())).isEmpty();
+    }
+
+    // Folds every node into an accumulator in one parallel pass; depth is 0 for start. Each task
+    // fills an accumulator of its own, so they need no synchronization, and merge(into, other)
+    // combines them as the tasks are joined.
+    public static <A> A accumulate(TreeNode start, Supplier<A> supplier, Accumulator<A> accumulator, BiConsumer<A, A> merge) {
+        AccumulateTask<A> task = new AccumulateTask<>(start, 0, supplier, accumulator, merge);
+        return isLarge(start) ? ForkJoinPool.commonPool().invoke(task) : task.compute();
+    }
+
+    private static List<TreeNode> run(FindTask task) {
+        return isLarge(task.start) ? ForkJoinPool.commonPool().invoke(task) : task.compute();
+    }
+
+    private static boolean isLarge(TreeNode start) {
+        return start instanceof DirectoryNode && ((DirectoryNode) start).getDescendantCount() >= PARALLEL_THRESHOLD;
+    }
+
+    // Whether a walk from a task holding half nodes should hand node to a task of its own
+    private static boolean shouldFork(TreeNode node, int depth, long half) {
+        long nodes = node instanceof DirectoryNode ? ((DirectoryNode) node).getDescendantCount() : 0;
+        return depth > 0 && nodes >= PARALLEL_THRESHOLD && nodes <= half;
+    }
+
+    private static long half(TreeNode start) {
+        return start instanceof DirectoryNode ? ((DirectoryNode) start).getDescendantCount() / 2 : 0;
+    }
+
+    private static final class FindTask extends RecursiveTask<List<TreeNode>> {
+        private final TreeNode start;
+        private final Predicate<? super TreeNode> predicate;
+        private final AtomicBoolean found; // Only set for anyMatch
+
+        FindTask(TreeNode start, Predicate<? super TreeNode> predicate, AtomicBoolean found) {
+            this.start = start;
+            this.predicate = predicate;
+            this.found = found;
+        }
+
+        @Override
+        protected List<TreeNode> compute() {
+            List<TreeNode> matches = new ArrayList<>();
+            List<FindTask> forked = new ArrayList<>();
+            long half = half(start);
+            walk(start, (node, depth) -> {
+                if (found != null && found.get()) {
+                    return false;
+                }
+                if (shouldFork(node, depth, half)) {
+                    FindTask task = new FindTask(node, predicate, found);
+                    task.fork();
+                    forked.add(task);
+                    return false;
+                }
+                if (predicate.test(node)) {
+                    matches.add(node);
+                    if (found != null) {
+                        found.set(true);
+                        return false;
+                    }
+                }
+                return true;
+            });
+            for (FindTask task : forked) {
+                matches.addAll(task.join());
+            }
+            return matches;
+        }
+    }
+
+    private static final class AccumulateTask<A> extends RecursiveTask<A> {
+        private final TreeNode start;
+        private final int startDepth;
+        private final Supplier<A> supplier;
+        private final Accumulator<A> accumulator;
+        private final BiConsumer<A, A> merge;
+
+        AccumulateTask(TreeNode start, int startDepth, Supplier<A> supplier, Accumulator<A> accumulator, BiConsumer<A, A> merge) {
+            this.start = start;
+            this.startDepth = startDepth;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.merge = merge;
+        }
+
+        @Override
+        protected A compute() {
+            A result = supplier.get();
+            List<AccumulateTask<A>> forked = new ArrayList<>();
+            long half = half(start);
+            walk(start, (node, depth) -> {
+                if (shouldFork(node, depth, half)) {
+                    AccumulateTask<A> task = new AccumulateTask<>(node, startDepth + depth, supplier, accumulator, merge);
+                    task.fork();
+                    forked.add(task);
+                    return false;
+                }
+                accumulator.add(result, node, startDepth + depth);
+                return true;
+            });
+            for (AccumulateTask<A> task : forked) {
+                merge.accept(result, task.join());
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Trigram -> names containing it. A substring or glob literal can only occur in names that
+// contain all of its trigrams, so the shortest posting set bounds the names worth checking.
+public class TrigramIndex {
+    private final ConcurrentHashMap<Long, Set<String>> postings = new ConcurrentHashMap<>();
+
+    public void add(String name) {
+        for (int i = 0; i + 3 <= name.length(); i++) {
+            postings.compute(trigram(name, i), (t, names) -> {
+                if (names == null) {
+                    names = ConcurrentHashMap.newKeySet();
+                }
+                names.add(name);
+                return names;
+            });
+        }
+    }
+
+    public void remove(String name) {
+        for (int i = 0; i + 3 <= name.length(); i++) {
+            postings.computeIfPresent(trigram(name, i), (t, names) -> names.remove(name) && names.isEmpty() ? null : names);
+        }
+    }
+
+    // Smallest posting set over all trigrams of the literals; null if none of them is three chars long.
+    // The candidates still have to be checked against the actual query.
+    public Set<String> candidates(List<String> literals) {
+        Set<String> smallest = null;
+        for (String literal : literals) {
+            for (int i = 0; i + 3 <= literal.length(); i++) {
+                Set<String> names = postings.get(trigram(literal, i));
+                if (names == null) {
+                    return Collections.emptySet();
+                }
+                if (smallest == null || names.size() < smallest.size()) {
+                    smallest = names;
+                }
+            }
+        }
+        return smallest;
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
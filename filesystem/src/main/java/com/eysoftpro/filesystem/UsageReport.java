@@ -0,0 +1,79 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Disk usage of a tree broken down four ways. Bytes are file sizes. byExtension and byAccessLevel
+// count files; byDepth and byTopLevel count nodes, directories included. byTopLevel leaves out the
+// files directly in the top directory. Extensions are lower-cased, as the extension index does.
+public class UsageReport {
+    // Count and bytes of one group of nodes
+    public static final class Usage {
+        private final long count;
+        private final long bytes;
+
+        Usage(long count, long bytes) {
+            this.count = count;
+            this.bytes = bytes;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        Usage plus(long moreCount, long moreBytes) {
+            return new Usage(count + moreCount, bytes + moreBytes);
+        }
+
+        @Override
+        public String toString() {
+            return count + " nodes, " + bytes + " bytes";
+        }
+    }
+
+    private final Map<String, Usage> byExtension;
+    private final Map<AccessLevel, Usage> byAccessLevel;
+    private final List<Usage> byDepth;
+    private final Map<String, Usage> byTopLevel;
+
+    UsageReport(Map<String, Usage> byExtension, Map<AccessLevel, Usage> byAccessLevel, List<Usage> byDepth, Map<String, Usage> byTopLevel) {
+        this.byExtension = Collections.unmodifiableMap(byExtension);
+        this.byAccessLevel = Collections.unmodifiableMap(byAccessLevel);
+        this.byDepth = Collections.unmodifiableList(byDepth);
+        this.byTopLevel = Collections.unmodifiableMap(byTopLevel);
+    }
+
+    // Files only, sorted by extension
+    public Map<String, Usage> byExtension() {
+        return byExtension;
+    }
+
+    public Map<AccessLevel, Usage> byAccessLevel() {
+        return byAccessLevel;
+    }
+
+    // Element d covers the nodes d levels below the top directory, which is element 0
+    public List<Usage> byDepth() {
+        return byDepth;
+    }
+
+    // One entry per directory directly below the top directory, sorted by name
+    public Map<String, Usage> byTopLevel() {
+        return byTopLevel;
+    }
+
+    public Usage getTotal() {
+        long count = 0;
+        long bytes = 0;
+        for (Usage usage : byDepth) {
+            count += usage.count;
+            bytes += usage.bytes;
+        }
+        return new Usage(count, bytes);
+    }
+}
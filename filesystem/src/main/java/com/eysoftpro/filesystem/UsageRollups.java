@@ -0,0 +1,188 @@
+package com.eysoftpro.filesystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.eysoftpro.filesystem.UsageReport.Usage;
+
+// Materialized usage rollups of the whole tree behind FileSystem.getUsage. A subtree that is added
+// or removed is tallied in one parallel pass (see TreeTraversal.accumulate), and the tally is then
+// added to or subtracted from the totals, one atomic compute per key, so a single file costs a few
+// map updates and polling costs O(extensions + depth). Groups that drop to zero are removed.
+// Totals of different keys may briefly disagree while a writer is between its updates.
+class UsageRollups implements FileSystemListener {
+    private final ConcurrentHashMap<String, Usage> byExtension = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<AccessLevel, Usage> byAccessLevel = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Usage> byDepth = new ConcurrentHashMap<>();
+
+    @Override
+    public void nodeAdded(TreeNode node) {
+        apply(tally(node, depth(node)), 1);
+    }
+
+    @Override
+    public void nodeRemoved(DirectoryNode parent, TreeNode node) {
+        apply(tally(node, depth(parent) + 1), -1);
+    }
+
+    // Files of a lazily loaded manifest are counted once, from the scan (see addFiles)
+    @Override
+    public void nodeLoaded(FileNode file) {
+    }
+
+    @Override
+    public void nodeUnloaded(DirectoryNode parent, FileNode file) {
+    }
+
+    void addFiles(Tally files) {
+        apply(files, 1);
+    }
+
+    // Report of the totals; byTopLevel is read from the top-level directories' own aggregates
+    UsageReport report(DirectoryNode root) {
+        Map<String, Usage> extensions = new TreeMap<>(byExtension);
+        Map<AccessLevel, Usage> levels = new EnumMap<>(AccessLevel.class); // the copy constructor rejects an empty map
+        levels.putAll(byAccessLevel);
+        List<Usage> depths = new ArrayList<>();
+        for (int depth = 0; byDepth.containsKey(depth); depth++) {
+            depths.add(byDepth.get(depth));
+        }
+        return new UsageReport(extensions, levels, depths, topLevel(root));
+    }
+
+    // Computes a report for one subtree from scratch, with depths counted from start
+    static UsageReport compute(DirectoryNode start) {
+        Tally tally = tally(start, 0);
+        Map<String, Usage> extensions = new TreeMap<>();
+        tally.extensions.forEach((extension, values) -> extensions.put(extension, new Usage(values[0], values[1])));
+        Map<AccessLevel, Usage> levels = new EnumMap<>(AccessLevel.class);
+        for (AccessLevel level : AccessLevel.values()) {
+            if (tally.levels[level.ordinal()][0] != 0) {
+                levels.put(level, new Usage(tally.levels[level.ordinal()][0], tally.levels[level.ordinal()][1]));
+            }
+        }
+        List<Usage> depths = new ArrayList<>();
+        for (int depth = 0; depth < tally.depths.length && tally.depths[depth][0] != 0; depth++) {
+            depths.add(new Usage(tally.depths[depth][0], tally.depths[depth][1]));
+        }
+        return new UsageReport(extensions, levels, depths, topLevel(start));
+    }
+
+    private static Map<String, Usage> topLevel(DirectoryNode top) {
+        Map<String, Usage> directories = new TreeMap<>();
+        for (TreeNode child : top.children()) {
+            if (child instanceof DirectoryNode) {
+                directories.put(child.getName(), new Usage(((DirectoryNode) child).getDescendantCount() + 1, child.getSize()));
+            }
+        }
+        return directories;
+    }
+
+    private static int depth(TreeNode node) {
+        int depth = 0;
+        for (DirectoryNode parent = node.getParent(); parent != null; parent = parent.getParent()) {
+            depth++;
+        }
+        return depth;
+    }
+
+    private static Tally tally(TreeNode node, int depth) {
+        if (node instanceof FileNode) {
+            Tally tally = new Tally(depth);
+            tally.add(node, depth);
+            return tally;
+        }
+        return TreeTraversal.accumulate(node, () -> new Tally(depth), (into, n, d) -> into.add(n, depth + d), Tally::merge);
+    }
+
+    private void apply(Tally tally, int sign) {
+        tally.extensions.forEach((extension, values) -> add(byExtension, extension, values, sign));
+        for (AccessLevel level : AccessLevel.values()) {
+            add(byAccessLevel, level, tally.levels[level.ordinal()], sign);
+        }
+        for (int depth = 0; depth < tally.depths.length; depth++) {
+            add(byDepth, depth, tally.depths[depth], sign);
+        }
+    }
+
+    private static <K> void add(ConcurrentHashMap<K, Usage> totals, K key, long[] values, int sign) {
+        if (values[0] == 0) {
+            return;
+        }
+        totals.compute(key, (k, usage) -> {
+            Usage sum = usage == null ? new Usage(sign * values[0], sign * values[1]) : usage.plus(sign * values[0], sign * values[1]);
+            return sum.getCount() != 0 ? sum : null;
+        });
+    }
+
+    // One task's counts; every long[] holds {count, bytes}
+    static final class Tally {
+        final Map<String, long[]> extensions = new HashMap<>();
+        final long[][] levels = new long[AccessLevel.values().length][2];
+        long[][] depths;
+
+        // A directory's access level follows its children, so levels count files only
+        Tally(int depth) {
+            depths = new long[depth + 1][2];
+        }
+
+        void add(TreeNode node, int depth) {
+            if (node instanceof FileNode) {
+                addFile(((FileNode) node).getExtension(), node.getSize(), node.getAccessLevel(), depth);
+            } else {
+                count(depth, 0);
+            }
+        }
+
+        void addFile(String extension, long bytes, AccessLevel accessLevel, int depth) {
+            count(extensions.computeIfAbsent(NameIndex.foldCase(extension), key -> new long[2]), bytes);
+            count(levels[accessLevel.ordinal()], bytes);
+            count(depth, bytes);
+        }
+
+        private void count(int depth, long bytes) {
+            if (depth >= depths.length) {
+                grow(depth + 1);
+            }
+            count(depths[depth], bytes);
+        }
+
+        void merge(Tally other) {
+            other.extensions.forEach((extension, values) -> {
+                long[] mine = extensions.computeIfAbsent(extension, key -> new long[2]);
+                mine[0] += values[0];
+                mine[1] += values[1];
+            });
+            for (int i = 0; i < levels.length; i++) {
+                levels[i][0] += other.levels[i][0];
+                levels[i][1] += other.levels[i][1];
+            }
+            if (other.depths.length > depths.length) {
+                grow(other.depths.length);
+            }
+            for (int i = 0; i < other.depths.length; i++) {
+                depths[i][0] += other.depths[i][0];
+                depths[i][1] += other.depths[i][1];
+            }
+        }
+
+        private void grow(int length) {
+            int old = depths.length;
+            depths = Arrays.copyOf(depths, Math.max(length, old * 2));
+            for (int i = old; i < depths.length; i++) {
+                depths[i] = new long[2];
+            }
+        }
+
+        private static void count(long[] values, long bytes) {
+            values[0]++;
+            values[1] += bytes;
+        }
+    }
+}
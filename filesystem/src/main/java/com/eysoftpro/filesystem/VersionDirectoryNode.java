@@ -0,0 +1,155 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Read-only DirectoryNode view of a directory in a FileSystemVersion. Immutable nodes are shared
+// between versions and have no parent links, so a view remembers the view it was reached from and
+// its position there; views are created on the way down and are cheap to throw away.
+public class VersionDirectoryNode extends DirectoryNode {
+    private final PersistentNode node;
+    private final VersionDirectoryNode parent;
+    private final int index; // in parent's children
+
+    VersionDirectoryNode(PersistentNode node, VersionDirectoryNode parent, int index) {
+        super(node.name);
+        this.node = node;
+        this.parent = parent;
+        this.index = index;
+    }
+
+    static TreeNode view(PersistentNode node, VersionDirectoryNode parent, int index) {
+        return node.directory ? new VersionDirectoryNode(node, parent, index) : new VersionFileNode(node, parent, index);
+    }
+
+    // The child at index, or null past the end
+    TreeNode child(int i) {
+        return i < node.children.length ? view(node.children[i], this, i) : null;
+    }
+
+    @Override
+    public Date getLastModified() {
+        return new Date(node.lastModified);
+    }
+
+    @Override
+    public long getSize() {
+        return node.size;
+    }
+
+    @Override
+    public AccessLevel getAccessLevel() {
+        return node.accessLevel;
+    }
+
+    @Override
+    public DirectoryNode getParent() {
+        return parent;
+    }
+
+    @Override
+    TreeNode getNextSibling() {
+        return parent != null ? parent.child(index + 1) : null;
+    }
+
+    @Override
+    TreeNode getFirstChild() {
+        return child(0);
+    }
+
+    @Override
+    public long getDescendantCount() {
+        return node.descendants;
+    }
+
+    @Override
+    public long getSystemDescendantCount() {
+        return node.systemDescendants;
+    }
+
+    @Override
+    public long getContentHash() {
+        return node.contentHash;
+    }
+
+    // Counted when asked: it is rarely needed, and the shared nodes stay a field smaller
+    @Override
+    int getSystemChildCount() {
+        int system = 0;
+        for (PersistentNode child : node.children) {
+            if (child.accessLevel == AccessLevel.SYSTEM) {
+                system++;
+            }
+        }
+        return system;
+    }
+
+    @Override
+    AccessLevel getOwnAccessLevel() {
+        return node.ownAccessLevel;
+    }
+
+    @Override
+    Date getOwnLastModified() {
+        return new Date(node.ownLastModified);
+    }
+
+    @Override
+    public int getChildCount() {
+        return node.children.length;
+    }
+
+    @Override
+    public FileNode getFile(String name) {
+        int i = node.indexOf(name, false);
+        return i >= 0 ? (FileNode) child(i) : null;
+    }
+
+    @Override
+    public DirectoryNode getDirectory(String name) {
+        int i = node.indexOf(name, true);
+        return i >= 0 ? (DirectoryNode) child(i) : null;
+    }
+
+    // In name order
+    @Override
+    public Iterable<TreeNode> children() {
+        return () -> new Iterator<TreeNode>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < node.children.length;
+            }
+
+            @Override
+            public TreeNode next() {
+                if (next >= node.children.length) {
+                    throw new NoSuchElementException();
+                }
+                return child(next++);
+            }
+        };
+    }
+
+    @Override
+    public void addChild(TreeNode child) {
+        throw new UnsupportedOperationException("FileSystemVersion is read-only");
+    }
+
+    @Override
+    public void removeChild(TreeNode child) {
+        throw new UnsupportedOperationException("FileSystemVersion is read-only");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof VersionDirectoryNode && ((VersionDirectoryNode) o).node == node;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(node);
+    }
+}
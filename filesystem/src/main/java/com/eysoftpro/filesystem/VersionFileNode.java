@@ -0,0 +1,52 @@
+package com.eysoftpro.filesystem;
+
+import java.util.Date;
+
+// Read-only FileNode view of a file in a FileSystemVersion (see VersionDirectoryNode)
+public class VersionFileNode extends FileNode {
+    private final PersistentNode node;
+    private final VersionDirectoryNode parent;
+    private final int index; // in parent's children
+
+    VersionFileNode(PersistentNode node, VersionDirectoryNode parent, int index) {
+        super(node.name, null, 0, null, node.extension); // copied from a FileNode, so interned already
+        this.node = node;
+        this.parent = parent;
+        this.index = index;
+    }
+
+    @Override
+    public Date getLastModified() {
+        return new Date(node.lastModified);
+    }
+
+    @Override
+    public long getSize() {
+        return node.size;
+    }
+
+    @Override
+    public AccessLevel getAccessLevel() {
+        return node.accessLevel;
+    }
+
+    @Override
+    public DirectoryNode getParent() {
+        return parent;
+    }
+
+    @Override
+    TreeNode getNextSibling() {
+        return parent.child(index + 1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof VersionFileNode && ((VersionFileNode) o).node == node;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(node);
+    }
+}
@@ -0,0 +1,137 @@
+package com.eysoftpro.filesystem;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+// Turns every change of the live tree into a new FileSystemVersion by path copying: the changed
+// node's ancestors are rebuilt and everything else is shared, so a version costs O(depth x fan-out)
+// time and memory. Listener calls come from writers holding the affected directories' locks; they
+// are serialized here so the versions form one sequence. Retention drops versions beyond
+// maxVersions and those older than maxAgeMillis; the current version is always kept. A dropped
+// version stays usable by whoever still holds it and is reclaimed by the garbage collector once
+// nobody does.
+class VersionHistory implements FileSystemListener {
+    private final int maxVersions;
+    private final long maxAgeMillis;
+    private final ArrayDeque<FileSystemVersion> versions = new ArrayDeque<>(); // oldest first
+    private volatile FileSystemVersion current;
+
+    VersionHistory(int maxVersions, long maxAgeMillis) {
+        if (maxVersions < 1) {
+            throw new IllegalArgumentException("maxVersions must be at least 1");
+        }
+        this.maxVersions = maxVersions;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    FileSystemVersion current() {
+        return current;
+    }
+
+    synchronized FileSystemVersion get(long number) {
+        FileSystemVersion oldest = versions.peekFirst();
+        if (oldest == null || number < oldest.getNumber() || number > current.getNumber()) {
+            return null;
+        }
+        for (FileSystemVersion version : versions) {
+            if (version.getNumber() == number) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    // The version that was current at time, or null if that is before the oldest one retained
+    synchronized FileSystemVersion at(Date time) {
+        Iterator<FileSystemVersion> newestFirst = versions.descendingIterator();
+        while (newestFirst.hasNext()) {
+            FileSystemVersion version = newestFirst.next();
+            if (version.getCreatedMillis() <= time.getTime()) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    synchronized List<FileSystemVersion> all() {
+        return new ArrayList<>(versions);
+    }
+
+    @Override
+    public synchronized void nodeAdded(TreeNode node) {
+        DirectoryNode parent = node.getParent();
+        if (parent == null) {
+            publish(PersistentNode.copyOf(node)); // the root, when the history starts
+            return;
+        }
+        PersistentNode copy = PersistentNode.copyOf(node);
+        publish(update(current.root, parent, dir -> dir.withChild(copy)));
+    }
+
+    @Override
+    public synchronized void nodeRemoved(DirectoryNode parent, TreeNode node) {
+        boolean directory = node instanceof DirectoryNode;
+        publish(update(current.root, parent, dir -> dir.withoutChild(node.getName(), directory)));
+    }
+
+    // Versions hold every file of the tree, loaded or not: FileSystem loads lazy manifests fully
+    // and stops unloading while versioning is on. A file read in again is therefore normally in the
+    // current version already and needs no new one; it is only added if it is missing.
+    @Override
+    public synchronized void nodeLoaded(FileNode file) {
+        PersistentNode[] path = path(current.root, file.getParent());
+        if (path[path.length - 1].child(file.getName(), false) == null) {
+            nodeAdded(file);
+        }
+    }
+
+    // The file is still part of the tree, so the versions keep it
+    @Override
+    public void nodeUnloaded(DirectoryNode parent, FileNode file) {
+    }
+
+    private interface Change {
+        PersistentNode apply(PersistentNode directory);
+    }
+
+    // Applies change to the copy of the live directory target and rebuilds the path up to the root
+    private static PersistentNode update(PersistentNode root, DirectoryNode target, Change change) {
+        PersistentNode[] path = path(root, target);
+        PersistentNode changed = change.apply(path[path.length - 1]);
+        for (int i = path.length - 2; i >= 0; i--) {
+            changed = path[i].withChild(changed);
+        }
+        return changed;
+    }
+
+    // The copies of the live directories from the root down to target
+    private static PersistentNode[] path(PersistentNode root, DirectoryNode target) {
+        List<String> names = new ArrayList<>();
+        for (DirectoryNode dir = target; dir.getParent() != null; dir = dir.getParent()) {
+            names.add(dir.getName());
+        }
+        PersistentNode[] path = new PersistentNode[names.size() + 1];
+        path[0] = root;
+        for (int i = 1; i < path.length; i++) {
+            path[i] = path[i - 1].child(names.get(names.size() - i), true);
+            if (path[i] == null) {
+                throw new IllegalStateException("Version history is out of step with the tree at " + target.getFullPath());
+            }
+        }
+        return path;
+    }
+
+    private void publish(PersistentNode root) {
+        long now = System.currentTimeMillis();
+        FileSystemVersion version = new FileSystemVersion(current != null ? current.getNumber() + 1 : 1, now, root);
+        versions.addLast(version);
+        current = version;
+        while (versions.size() > maxVersions
+                || (versions.size() > 1 && versions.peekFirst().getCreatedMillis() < now - maxAgeMillis)) {
+            versions.removeFirst();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AttributeIndexTest {
+    private FileSystem fs;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fs = new FileSystem();
+        fs.addDirectory("/", "big", "USER");
+        fs.addDirectory("/big", "inner", "USER");
+        fs.addDirectory("/", "small", "USER");
+        fs.addDirectory("/", "empty", "USER");
+        fs.addFile("/big", "a.bin", "bin", 100, "USER", new Date(1000));
+        fs.addFile("/big/inner", "b.bin", "bin", 60, "USER", new Date(4000));
+        fs.addFile("/big/inner", "c.bin", "bin", 60, "USER", new Date(2000));
+        fs.addFile("/small", "d.txt", "txt", 10, "USER", new Date(2000));
+        fs.addFile("/small", "e.txt", "txt", 5, "USER", new Date(3000));
+    }
+
+    private static List<String> names(List<? extends TreeNode> nodes) {
+        return nodes.stream().map(TreeNode::getName).toList();
+    }
+
+    private static List<String> names(Iterator<FileNode> files) {
+        List<String> names = new ArrayList<>();
+        files.forEachRemaining(file -> names.add(file.getName()));
+        return names;
+    }
+
+    @Test
+    void sizeRangesIncludeBothBounds() {
+        List<String> range = names(fs.searchBySize(10, 60, 0));
+        assertEquals("d.txt", range.get(0));
+        assertEquals(List.of("b.bin", "c.bin"), range.subList(1, 3).stream().sorted().toList()); // equal sizes
+        assertEquals(List.of("d.txt"), names(fs.searchBySize(10, 10, 0)));
+        assertEquals(List.of("e.txt", "d.txt"), names(fs.searchBySize(0, 59, 0))); // ascending
+        assertEquals(1, fs.searchBySize(0, Long.MAX_VALUE, 1).size());
+        assertTrue(fs.searchBySize(61, 99, 0).isEmpty());
+        assertTrue(fs.searchBySize(60, 10, 0).isEmpty()); // from > to
+    }
+
+    @Test
+    void dateRangesIncludeBothBounds() {
+        assertEquals(List.of("a.bin"), names(fs.searchByLastModified(new Date(0), new Date(1000), 0)));
+        assertEquals(List.of("e.txt", "b.bin"), names(fs.searchByLastModified(new Date(3000), new Date(4000), 0)));
+        assertEquals(2, fs.searchByLastModified(new Date(2000), new Date(2000), 0).size());
+        assertTrue(fs.searchByLastModified(new Date(4000), new Date(1000), 0).isEmpty()); // from > to
+        assertTrue(fs.searchByLastModified(new Date(4001), new Date(9000), 0).isEmpty());
+    }
+
+    @Test
+    void modifiedSinceIsNewestFirst() {
+        List<String> since = names(fs.searchModifiedSince(new Date(2000), 0));
+        assertEquals(List.of("b.bin", "e.txt"), since.subList(0, 2));
+        assertEquals(List.of("c.bin", "d.txt"), since.subList(2, 4).stream().sorted().toList()); // equal dates
+        assertEquals(List.of("b.bin"), names(fs.searchModifiedSince(new Date(4000), 0)));
+        assertEquals(List.of("b.bin"), names(fs.searchModifiedSince(new Date(0), 1)));
+        assertTrue(fs.searchModifiedSince(new Date(4001), 0).isEmpty());
+    }
+
+    @Test
+    void topFilesComeInDescendingOrder() {
+        List<FileNode> largest = fs.largestFiles(5);
+        assertEquals(List.of(100L, 60L, 60L, 10L, 5L), largest.stream().map(FileNode::getSize).toList());
+        assertEquals(List.of("a.bin"), names(fs.largestFiles(1)));
+        assertTrue(fs.largestFiles(0).isEmpty());
+        assertEquals(5, fs.largestFiles(50).size());
+        assertEquals(List.of(4000L, 3000L, 2000L, 2000L, 1000L),
+                fs.newestFiles(5).stream().map(file -> file.getLastModified().getTime()).toList());
+        assertTrue(fs.newestFiles(-1).isEmpty());
+    }
+
+    @Test
+    void removingOneOfEqualValuesKeepsTheOther() throws Exception {
+        fs.removeFile("/big/inner", "b.bin");
+        assertEquals(List.of("c.bin"), names(fs.searchBySize(60, 60, 0)));
+        assertEquals(List.of(100L, 60L, 10L, 5L), fs.largestFiles(10).stream().map(FileNode::getSize).toList());
+        fs.removeFile("/big/inner", "c.bin");
+        assertTrue(fs.searchBySize(60, 60, 0).isEmpty());
+        fs.removeDirectoryRecursively("/", "small");
+        assertEquals(List.of("a.bin"), names(fs.newestFiles(10)));
+    }
+
+    @Test
+    void largestDirectoriesStartAtTheRoot() throws Exception {
+        List<DirectoryNode> dirs = fs.largestDirectories(10);
+        assertEquals(List.of("root", "big", "inner", "small", "empty"), names(dirs));
+        assertEquals(List.of(235L, 220L, 120L, 15L, 0L), dirs.stream().map(DirectoryNode::getSize).toList());
+        assertEquals(List.of("root"), names(fs.largestDirectories(1))); // the root counts toward k
+        assertTrue(fs.largestDirectories(0).isEmpty());
+
+        fs.addFile("/small", "f.txt", "txt", 300, "USER", new Date(0));
+        assertEquals(List.of("root", "small", "big"), names(fs.largestDirectories(3)));
+    }
+
+    @Test
+    void indexFollowsAddsAndRemovesOfWholeSubtrees() {
+        AttributeIndex index = new AttributeIndex(FileNode::getSize);
+        DirectoryNode dir = new DirectoryNode("d", new Date(0), AccessLevel.USER);
+        FileNode one = new FileNode("one", "x", new Date(0), 7, AccessLevel.USER);
+        FileNode two = new FileNode("two", "x", new Date(0), 7, AccessLevel.USER);
+        FileNode three = new FileNode("three", "x", new Date(0), 9, AccessLevel.USER);
+        dir.addChild(one);
+        dir.addChild(two);
+        dir.addChild(three);
+        index.nodeAdded(dir);
+        assertEquals(List.of("three"), names(index.range(8, 9, false)));
+        assertEquals(3, names(index.range(7, 9, true)).size());
+        assertEquals("three", index.descending().next().getName());
+        assertFalse(index.range(9, 7, false).hasNext());
+
+        index.nodeRemoved(dir, one);
+        assertEquals(List.of("two", "three"), names(index.range(0, 100, false)));
+        index.nodeRemoved(null, dir);
+        assertFalse(index.descending().hasNext());
+    }
+}
@@ -0,0 +1,73 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CommandProcessorTest {
+    // Runs each line as a script would and returns everything written, with the statuses
+    private static List<String> run(CommandProcessor processor, List<CommandProcessor.Status> statuses, String... lines) {
+        StringWriter buffer = new StringWriter();
+        try (PrintWriter out = new PrintWriter(buffer)) {
+            for (String line : lines) {
+                statuses.add(processor.execute(line, out));
+            }
+        }
+        return buffer.toString().lines().toList();
+    }
+
+    @Test
+    void scriptRepliesWithOneStatusLinePerCommand() {
+        FileSystem fs = new FileSystem();
+        List<CommandProcessor.Status> statuses = new ArrayList<>();
+        List<String> output = run(new CommandProcessor(fs), statuses,
+                "# a comment",
+                "mkdir / docs",
+                "add /docs a txt 10 USER 1000",
+                "add /docs \"b c\" txt 5 USER 2000",
+                "find \"b c\"",
+                "ext TXT",
+                "mkdir /missing x",
+                "add /docs a txt",
+                "bogus",
+                "rm /docs a",
+                "size /docs",
+                "quit");
+        assertEquals(List.of(
+                "OK 0",
+                "OK 0",
+                "OK 0",
+                "file\troot/docs/b c.txt\t5\t2000\tUSER",
+                "OK 1",
+                "file\troot/docs/a.txt\t10\t1000\tUSER",
+                "file\troot/docs/b c.txt\t5\t2000\tUSER",
+                "OK 2",
+                "ERR Path not found: /missing",
+                "ERR Wrong number of arguments for add",
+                "ERR Unknown command: bogus",
+                "OK 0",
+                "dir\troot/docs\t5\t2000\tUSER",
+                "OK 1",
+                "OK 0"), output);
+        assertEquals(List.of(CommandProcessor.Status.OK, CommandProcessor.Status.OK, CommandProcessor.Status.OK,
+                CommandProcessor.Status.OK, CommandProcessor.Status.OK, CommandProcessor.Status.OK,
+                CommandProcessor.Status.FAILED, CommandProcessor.Status.FAILED, CommandProcessor.Status.FAILED,
+                CommandProcessor.Status.OK, CommandProcessor.Status.OK, CommandProcessor.Status.QUIT), statuses);
+    }
+
+    @Test
+    void malformedLinesAreReportedNotThrown() {
+        List<CommandProcessor.Status> statuses = new ArrayList<>();
+        List<String> output = run(new CommandProcessor(new FileSystem()), statuses,
+                "mkdir / \"open", "add / f txt notanumber", "largest x", "ls /");
+        assertEquals(List.of("ERR Unterminated quote", "ERR For input string: \"notanumber\"",
+                "ERR For input string: \"x\"", "OK 0"), output);
+        assertEquals(CommandProcessor.Status.FAILED, statuses.get(0));
+        assertEquals(CommandProcessor.Status.OK, statuses.get(3));
+    }
+}
@@ -0,0 +1,72 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class CommandServerTest {
+    private static Socket connect(CommandServer server) throws Exception {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(10_000);
+        return socket;
+    }
+
+    private static BufferedReader reader(Socket socket) throws Exception {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static PrintWriter writer(Socket socket) throws Exception {
+        return new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void servesPipelinedCommandsOnAFreePort() throws Exception {
+        FileSystem fs = new FileSystem();
+        try (CommandServer server = new CommandServer(fs, 0);
+             Socket socket = connect(server)) {
+            assertTrue(server.getPort() > 0);
+            PrintWriter out = writer(socket);
+            BufferedReader in = reader(socket);
+            out.print("mkdir / docs\nadd /docs a txt 10 USER 1000\nfind a\nrm /docs missing\n");
+            out.flush();
+            assertEquals("OK 0", in.readLine());
+            assertEquals("OK 0", in.readLine());
+            assertEquals("file\troot/docs/a.txt\t10\t1000\tUSER", in.readLine());
+            assertEquals("OK 1", in.readLine());
+            assertTrue(in.readLine().startsWith("ERR File not found: missing"));
+            out.println("quit");
+            assertEquals("OK 0", in.readLine());
+            assertNull(in.readLine()); // the server closed the connection
+        }
+        assertEquals(10, fs.getRoot().getSize());
+    }
+
+    @Test
+    void clientsBeyondTheBoundAreRejected() throws Exception {
+        try (CommandServer server = new CommandServer(new FileSystem(), 0, CommandServer.newBoundedExecutor(1));
+             Socket first = connect(server)) {
+            PrintWriter out = writer(first);
+            BufferedReader in = reader(first);
+            out.println("ls /");
+            assertEquals("OK 0", in.readLine()); // the only thread is now serving first
+
+            try (Socket second = connect(server)) {
+                BufferedReader rejected = reader(second);
+                assertEquals("ERR Too many connections", rejected.readLine());
+                assertNull(rejected.readLine());
+            }
+
+            out.println("quit");
+            assertEquals("OK 0", in.readLine());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CompactTreeTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void aggregatesMatchTheNodeTree() throws IOException {
+        Path manifest = Trees.manifest(dir,
+                "\\root",
+                "\t\\srv",
+                "\t\t\\etc",
+                "\t\t\tpasswd##1.1.2020##9##SYSTEM",
+                "\t\t\tshadow##1.1.2020##3##SYSTEM",
+                "\t\tnotes.txt##2.1.2020##4##USER",
+                "\t\\home",
+                "\t\ta.txt##3.1.2020##5##USER",
+                "\t\tkey.bin##4.1.2020##1##SYSTEM");
+        CompactTree tree = CompactTree.load(manifest.toString());
+        FileSystem fs = new FileSystem();
+        fs.loadFromFileSystem(manifest.toString());
+
+        DirectoryNode root = tree.getRoot();
+        Trees.assertAggregates(root);
+        assertEquals(fs.getRoot().getSize(), root.getSize());
+        assertEquals(fs.getRoot().getDescendantCount(), root.getDescendantCount());
+        assertEquals(4, root.getSystemDescendantCount()); // passwd, shadow, etc and key.bin
+        assertEquals(fs.getRoot().getSystemDescendantCount(), root.getSystemDescendantCount());
+        assertEquals(fs.getRoot().getContentHash(), root.getContentHash());
+
+        DirectoryNode srv = root.getDirectory("srv");
+        assertEquals(1, srv.getSystemChildCount());
+        assertEquals(3, srv.getSystemDescendantCount());
+        assertEquals(AccessLevel.SYSTEM, srv.getDirectory("etc").getAccessLevel());
+        assertEquals(2, srv.getDirectory("etc").getSystemChildCount());
+    }
+}
@@ -0,0 +1,140 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+// Writers and lock-free readers on one FileSystem at the same time. Afterwards every aggregate and
+// index must match a recount of the tree. How the same mix of reads and writes scales with threads
+// is measured by MutationBenchmark.mixedReadWrite1..8.
+class ConcurrencyStressTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int ROUNDS = 400;
+
+    @Test
+    void readersAndWritersLeaveConsistentAggregatesAndIndexes() throws Exception {
+        FileSystem fs = new FileSystem();
+        for (int d = 0; d < WRITERS / 2; d++) {
+            fs.addDirectory("/", "w" + d, "USER");
+            fs.addFile("/w" + d, "keep.txt", "txt", 1, "USER", new Date(0));
+            fs.addDirectory("/w" + d, "locked", "USER");
+            fs.addFile("/w" + d + "/locked", "k.bin", "bin", 3, "SYSTEM", new Date(0));
+        }
+
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(WRITERS + READERS);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            writers.add(threads.submit(() -> {
+                start.await();
+                write(fs, writer);
+                return null;
+            }));
+        }
+        for (int r = 0; r < READERS; r++) {
+            int reader = r;
+            threads.submit(() -> {
+                try {
+                    start.await();
+                    while (writing.get()) {
+                        read(fs, reader);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        try {
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            writing.set(false);
+            threads.shutdown();
+            assertTrue(threads.awaitTermination(60, TimeUnit.SECONDS));
+        }
+        assertTrue(failures.isEmpty(), () -> "reader failed: " + failures.peek());
+
+        Trees.assertAggregates(fs.getRoot());
+        assertIndexes(fs);
+        // Each writer keeps every other file and every third directory, plus the starting tree
+        assertEquals(WRITERS * (ROUNDS / 2 + (ROUNDS + 2) / 3 * 2) + WRITERS / 2 * 4, fs.getRoot().getDescendantCount());
+    }
+
+    // Two writers share each top-level directory, so they contend for the same locks
+    private static void write(FileSystem fs, int writer) throws FileSystemException {
+        String dir = "/w" + writer % (WRITERS / 2);
+        for (int i = 0; i < ROUNDS; i++) {
+            String name = "f" + writer + "-" + i + (i % 2 == 0 ? ".txt" : ".log");
+            fs.addFile(dir, name, i % 2 == 0 ? "txt" : "log", i, i % 4 == 0 ? "SYSTEM" : "USER", new Date(i));
+            if (i % 2 == 1) {
+                fs.removeFile(dir, name);
+            }
+            String sub = "d" + writer + "-" + i;
+            fs.addDirectory(dir, sub, "USER");
+            fs.addFile(dir + "/" + sub, "x.txt", "txt", 2, "USER", new Date(i));
+            if (i % 3 != 0) {
+                fs.removeDirectoryRecursively(dir, sub);
+            }
+        }
+    }
+
+    private static void read(FileSystem fs, int reader) throws FileSystemException {
+        for (TreeNode node : fs.searchByName("x.txt")) {
+            assertEquals("x.txt", node.getName());
+        }
+        for (FileNode file : fs.searchByExtension(reader % 2 == 0 ? "log" : "txt")) {
+            assertTrue(file.getName().endsWith(file.getExtension()), file.getName());
+        }
+        DirectoryListing listing = fs.openListing("/w" + reader % (WRITERS / 2), null);
+        for (int i = 0; i < 50 && listing.hasNext(); i++) {
+            listing.next();
+        }
+        DirectoryNode locked = fs.findDirectory("/w" + reader % (WRITERS / 2) + "/locked");
+        assertTrue(locked.getSystemDescendantCount() > 0);
+        assertTrue(fs.getRoot().getSystemDescendantCount() >= WRITERS / 2 * 2); // k.bin and locked stay
+    }
+
+    // Every name and extension in the tree finds exactly the files that have it
+    private static void assertIndexes(FileSystem fs) {
+        Map<String, List<TreeNode>> byName = new HashMap<>();
+        Map<String, List<TreeNode>> byExtension = new HashMap<>();
+        fs.walk((node, depth) -> {
+            if (depth > 0) {
+                byName.computeIfAbsent(NameIndex.foldCase(node.getName()), k -> new ArrayList<>()).add(node);
+            }
+            if (node instanceof FileNode) {
+                byExtension.computeIfAbsent(NameIndex.foldCase(((FileNode) node).getExtension()), k -> new ArrayList<>()).add(node);
+            }
+            return true;
+        });
+        for (Map.Entry<String, List<TreeNode>> entry : byName.entrySet()) {
+            assertEquals(Trees.paths(entry.getValue()), Trees.paths(fs.searchByName(entry.getKey())), entry.getKey());
+        }
+        for (Map.Entry<String, List<TreeNode>> entry : byExtension.entrySet()) {
+            assertEquals(Trees.paths(entry.getValue()), Trees.paths(fs.searchByExtension(entry.getKey())), entry.getKey());
+        }
+        assertTrue(fs.searchByName("f0-1.log").isEmpty()); // removed again
+    }
+}
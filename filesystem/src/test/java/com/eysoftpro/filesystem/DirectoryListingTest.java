@@ -0,0 +1,101 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DirectoryListingTest {
+    private FileSystem fs;
+
+    @BeforeEach
+    void setUp() throws FileSystemException {
+        fs = new FileSystem();
+        fs.addDirectory("/", "big", "USER");
+        FileSystemBatch batch = new FileSystemBatch();
+        for (int i = 0; i < 25; i++) {
+            batch.addFile("/big", "f" + i + ".txt", "txt", i, "USER", new Date(0));
+        }
+        batch.addDirectory("/big", "f3.txt", "USER"); // same name as a file
+        List<FileSystemException> errors = new ArrayList<>(fs.apply(batch));
+        errors.removeIf(Objects::isNull);
+        assertTrue(errors.isEmpty(), errors.toString());
+    }
+
+    private static List<String> names(List<TreeNode> nodes) {
+        List<String> names = new ArrayList<>();
+        for (TreeNode node : nodes) {
+            names.add((node instanceof DirectoryNode ? "d:" : "f:") + node.getName());
+        }
+        return names;
+    }
+
+    @Test
+    void tokensPageThroughEveryChildOnce() throws FileSystemException {
+        List<String> seen = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            DirectoryListing listing = fs.openListing("/big", token);
+            seen.addAll(names(listing.nextPage(4)));
+            token = listing.hasNext() ? listing.getResumeToken() : null;
+            pages++;
+        } while (token != null);
+        assertEquals(7, pages);
+        assertEquals(names(fs.getContents("/big")), seen);
+    }
+
+    @Test
+    void tokenNamesTheLastChildReturned() throws FileSystemException {
+        DirectoryListing listing = fs.openListing("/big", null);
+        assertNull(listing.getResumeToken());
+        listing.nextPage(3);
+        assertEquals("3:ff2.txt", listing.getResumeToken());
+        listing.nextPage(23);
+        assertEquals("26:df3.txt", listing.getResumeToken());
+        assertFalse(listing.hasNext());
+        assertTrue(listing.nextPage(5).isEmpty());
+    }
+
+    @Test
+    void resumesAfterChildrenRemovedBeforeTheAnchor() throws FileSystemException {
+        DirectoryListing listing = fs.openListing("/big", null);
+        listing.nextPage(10);
+        String token = listing.getResumeToken();
+        fs.removeFile("/big", "f2.txt");
+        assertEquals(List.of("f:f10.txt", "f:f11.txt"), names(fs.openListing("/big", token).nextPage(2)));
+    }
+
+    @Test
+    void resumesByPositionWhenTheAnchorIsGone() throws FileSystemException {
+        DirectoryListing listing = fs.openListing("/big", null);
+        listing.nextPage(10);
+        String token = listing.getResumeToken();
+        fs.removeFile("/big", "f9.txt");
+        // Ten children were returned; the eleventh is now f11
+        assertEquals(List.of("f:f11.txt"), names(fs.openListing("/big", token).nextPage(1)));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        for (String token : new String[]{"x", "3", "3:", ":ff1.txt", "3:xf1.txt", "a:ff1.txt"}) {
+            assertThrows(FileSystemException.class, () -> fs.openListing("/big", token), token);
+        }
+        assertThrows(InvalidPathException.class, () -> fs.openListing("/missing", null));
+    }
+
+    @Test
+    void pageSizeMustBePositive() throws FileSystemException {
+        DirectoryListing listing = fs.openListing("/big", null);
+        assertThrows(IllegalArgumentException.class, () -> listing.nextPage(0));
+    }
+}
@@ -0,0 +1,113 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiskScannerTest {
+    @TempDir
+    Path dir;
+
+    private Path top;
+
+    private static void file(Path path, int size, long millis) throws IOException {
+        Files.write(path, new byte[size]);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(millis));
+    }
+
+    // top/{a.txt, b, sub/{c.log, deep/{d}, link -> a.txt, linked -> deep}}, 4 files and 2 directories
+    @BeforeEach
+    void setUp() throws Exception {
+        top = Files.createDirectory(dir.resolve("top"));
+        Path sub = Files.createDirectory(top.resolve("sub"));
+        Path deep = Files.createDirectory(sub.resolve("deep"));
+        file(top.resolve("a.txt"), 10, 1_000_000);
+        file(top.resolve("b"), 0, 2_000_000);
+        file(sub.resolve("c.log"), 7, 3_000_000);
+        file(deep.resolve("d"), 3, 4_000_000);
+        Files.createSymbolicLink(sub.resolve("link"), top.resolve("a.txt"));
+        Files.createSymbolicLink(sub.resolve("linked"), deep);
+    }
+
+    @Test
+    void scannedTreeMatchesTheDisk() throws Exception {
+        DiskScanner scanner = new DiskScanner(2, DiskScanner.DEFAULT_MAX_ENTRIES);
+        DirectoryNode root = scanner.scan(top);
+
+        assertEquals("top", root.getName());
+        assertEquals(List.of("top/a.txt.txt", "top/b.", "top/sub", "top/sub/c.log.log", "top/sub/deep", "top/sub/deep/d."),
+                Trees.paths(TreeTraversal.findAll(root, node -> node != root)));
+        DirectoryNode sub = root.getDirectory("sub");
+        assertNull(sub.getFile("link")); // symbolic links are skipped, not followed
+        assertNull(sub.getDirectory("linked"));
+        assertEquals("txt", root.getFile("a.txt").getExtension());
+        assertEquals("", root.getFile("b").getExtension());
+        assertEquals(7, sub.getFile("c.log").getSize());
+        assertEquals(new Date(4_000_000), sub.getDirectory("deep").getFile("d").getLastModified());
+
+        long[] counts = Trees.assertAggregates(root);
+        assertEquals(6, counts[0]);
+        assertEquals(0, counts[1]);
+        assertEquals(20, root.getSize());
+        assertEquals(6, root.getDescendantCount());
+        assertEquals(10, sub.getSize());
+
+        assertEquals(6, scanner.getEntries());
+        assertEquals(0, scanner.getErrors());
+        assertFalse(scanner.isTruncated());
+    }
+
+    @Test
+    void maxEntriesCutsTheScanShort() throws Exception {
+        DiskScanner scanner = new DiskScanner(1, 3);
+        DirectoryNode root = scanner.scan(top);
+        assertTrue(scanner.isTruncated());
+        assertEquals(3, scanner.getEntries());
+        assertEquals(3, root.getDescendantCount());
+        Trees.assertAggregates(root);
+
+        // The counters start over with every scan
+        DirectoryNode deep = scanner.scan(top.resolve("sub").resolve("deep"));
+        assertFalse(scanner.isTruncated());
+        assertEquals(1, scanner.getEntries());
+        assertEquals(3, deep.getSize());
+    }
+
+    @Test
+    void onlyDirectoriesCanBeScanned() {
+        assertThrows(IOException.class, () -> new DiskScanner().scan(top.resolve("a.txt")));
+        assertThrows(IOException.class, () -> new DiskScanner().scan(top.resolve("missing")));
+        assertThrows(IllegalArgumentException.class, () -> new DiskScanner(0, 1));
+    }
+
+    @Test
+    void importedTreeJoinsTheFileSystem() throws Exception {
+        FileSystem fs = new FileSystem();
+        fs.addDirectory("/", "mnt", "USER");
+        assertEquals(7, fs.importFromDisk("/mnt", top.toString(), new DiskScanner()));
+
+        assertEquals(20, fs.getRoot().getSize());
+        assertEquals(List.of("root/mnt/top/sub/c.log.log"), Trees.paths(fs.searchByExtension("log")));
+        assertEquals(1, fs.searchByName("d").size());
+        assertEquals(7, fs.searchBySize(7, 7, 0).get(0).getSize());
+        Trees.assertAggregates(fs.getRoot());
+
+        // A second import of the same directory would collide with the first
+        assertThrows(FileSystemException.class, () -> fs.importFromDisk("/mnt", top.toString(), new DiskScanner()));
+        assertThrows(InvalidPathException.class, () -> fs.importFromDisk("/none", top.toString(), new DiskScanner()));
+        assertEquals(20, fs.getRoot().getSize());
+    }
+}
@@ -0,0 +1,169 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileSystemJournalTest {
+    @TempDir
+    Path dir;
+
+    private FileSystem open() throws IOException {
+        FileSystem fs = new FileSystem();
+        if (Files.exists(dir.resolve("tree.snap"))) {
+            fs.loadSnapshot(dir.resolve("tree.snap").toString());
+        }
+        fs.openJournal(dir.resolve("tree.journal").toString(), dir.resolve("tree.snap").toString());
+        return fs;
+    }
+
+    private static void populate(FileSystem fs) throws FileSystemException {
+        fs.addDirectory("/", "a", "USER");
+        fs.addFile("/a", "x.txt", "txt", 10, "USER", new Date(1000));
+        fs.addFile("/a", "y.txt", "txt", 20, "SYSTEM", new Date(2000));
+        fs.addFile("/a", "w.txt", "txt", 5, "USER", new Date(500));
+        fs.addDirectory("/", "b", "USER");
+        fs.removeFile("/a", "x.txt");
+        fs.addFile("/b", "z.bin", "bin", 30, "USER", new Date(3000));
+    }
+
+    @Test
+    void replayRebuildsTheTree() throws Exception {
+        FileSystem fs = open();
+        populate(fs);
+        fs.closeJournal();
+
+        FileSystem replayed = open();
+        assertEquals(fs.getRoot().getContentHash(), replayed.getRoot().getContentHash());
+        assertEquals(List.of("root/b/z.bin.bin"), Trees.paths(replayed.searchByExtension("bin")));
+        Trees.assertAggregates(replayed.getRoot());
+        replayed.closeJournal();
+    }
+
+    @Test
+    void tornTailIsCutOff() throws Exception {
+        Path journal = dir.resolve("tree.journal");
+        FileSystem fs = open();
+        populate(fs);
+        long complete = Files.size(journal);
+        fs.addFile("/b", "lost.txt", "txt", 1, "USER", new Date(0));
+        fs.closeJournal();
+
+        // A crash halfway through writing the last record
+        long full = Files.size(journal);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(complete + (full - complete) / 2);
+        }
+
+        FileSystem replayed = open();
+        assertNull(replayed.findDirectory("/b").getFile("lost.txt"));
+        assertNotNull(replayed.findDirectory("/b").getFile("z.bin"));
+        assertEquals(complete, Files.size(journal));
+        Trees.assertAggregates(replayed.getRoot());
+
+        // New records go after the last complete one and survive the next replay
+        replayed.addFile("/b", "kept.txt", "txt", 2, "USER", new Date(0));
+        replayed.closeJournal();
+        FileSystem again = open();
+        assertNotNull(again.findDirectory("/b").getFile("kept.txt"));
+        assertNull(again.findDirectory("/b").getFile("lost.txt"));
+        again.closeJournal();
+    }
+
+    @Test
+    void corruptRecordEndsTheJournal() throws Exception {
+        Path journal = dir.resolve("tree.journal");
+        FileSystem fs = open();
+        fs.addDirectory("/", "a", "USER");
+        long first = Files.size(journal);
+        fs.addDirectory("/", "b", "USER");
+        fs.addDirectory("/", "c", "USER");
+        fs.closeJournal();
+
+        byte[] bytes = Files.readAllBytes(journal);
+        bytes[(int) first + 12] ^= 0x55; // inside the payload of the record adding b
+        Files.write(journal, bytes);
+
+        List<String> names = new ArrayList<>();
+        FileSystemJournal.replay(journal, 0, record -> names.add(record.name));
+        assertEquals(List.of("a"), names);
+        assertEquals(first, Files.size(journal));
+    }
+
+    @Test
+    void failedRecordStopsReplayAndCutsTheJournal() throws Exception {
+        Path journal = dir.resolve("tree.journal");
+        FileSystem fs = new FileSystem();
+        fs.addDirectory("/", "a", "USER");
+        fs.openJournal(journal.toString(), dir.resolve("tree.snap").toString());
+        fs.addFile("/a", "x.txt", "txt", 1, "USER", new Date(0));
+        long beforeY = Files.size(journal);
+        fs.addFile("/a", "y.txt", "txt", 2, "USER", new Date(0));
+        fs.addFile("/a", "z.txt", "txt", 3, "USER", new Date(0)); // same parent, so replayed with y.txt
+        fs.addDirectory("/", "b", "USER");
+        fs.closeJournal();
+
+        // y.txt already exists here, so its record fails
+        FileSystem clash = new FileSystem();
+        clash.addDirectory("/", "a", "USER");
+        clash.addFile("/a", "y.txt", "txt", 9, "USER", new Date(0));
+        IOException e = assertThrows(IOException.class,
+                () -> clash.openJournal(journal.toString(), dir.resolve("tree.snap").toString()));
+        assertTrue(e.getMessage().contains("y.txt"), e.getMessage());
+        assertNotNull(clash.findDirectory("/a").getFile("x.txt"));
+        assertNull(clash.findDirectory("/a").getFile("z.txt"));
+        assertNull(clash.findDirectory("/b"));
+        assertEquals(beforeY, Files.size(journal));
+        Trees.assertAggregates(clash.getRoot());
+
+        FileSystem replayed = new FileSystem();
+        replayed.addDirectory("/", "a", "USER");
+        replayed.openJournal(journal.toString(), dir.resolve("tree.snap").toString());
+        assertEquals(List.of("root/a/x.txt.txt"), Trees.paths(replayed.searchByExtension("txt")));
+        replayed.closeJournal();
+    }
+
+    @Test
+    void checkpointEmptiesTheJournal() throws Exception {
+        FileSystem fs = open();
+        populate(fs);
+        fs.checkpoint();
+        assertEquals(0, Files.size(dir.resolve("tree.journal")));
+        fs.addFile("/a", "after.txt", "txt", 5, "USER", new Date(0));
+        fs.closeJournal();
+
+        FileSystem restored = open();
+        assertEquals(fs.getRoot().getContentHash(), restored.getRoot().getContentHash());
+        assertNotNull(restored.findDirectory("/a").getFile("after.txt"));
+        restored.closeJournal();
+    }
+
+    @Test
+    void recordsAlreadyInTheSnapshotAreSkipped() throws Exception {
+        FileSystem fs = open();
+        populate(fs);
+        // The snapshot is written, but the journal is not emptied, as after a crash between the two
+        fs.saveSnapshot(dir.resolve("tree.snap").toString());
+        fs.addFile("/a", "later.txt", "txt", 5, "USER", new Date(0));
+        fs.closeJournal();
+
+        FileSystem restored = open();
+        assertEquals(fs.getRoot().getContentHash(), restored.getRoot().getContentHash());
+        assertEquals(fs.getNodeCount(), restored.getNodeCount());
+        restored.closeJournal();
+    }
+}
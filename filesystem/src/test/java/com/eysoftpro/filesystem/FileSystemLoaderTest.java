@@ -0,0 +1,120 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+
+class FileSystemLoaderTest {
+    private static final String MANIFEST = String.join("\n",
+            "\\root",
+            "\t\\docs",
+            "\t\ta.txt##1.2.2020##10##USER",
+            "\t\t\\old",
+            "\t\t\tb.log##3.4.2019##5##SYSTEM",
+            "\t\\sys",
+            "\t\tk.bin##31.12.2021##7##SYSTEM",
+            "\ttop.md##1.1.2018##1##USER");
+
+    private static DirectoryNode load(String manifest) throws IOException {
+        DirectoryNode root = new DirectoryNode("root", new Date(0), AccessLevel.USER);
+        new FileSystemLoader(root).load(new StringReader(manifest));
+        return root;
+    }
+
+    private static long midnight(int year, int month, int day) {
+        return LocalDate.of(year, month, day).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Test
+    void buildsTreeWithAggregates() throws IOException {
+        DirectoryNode root = load(MANIFEST);
+        Trees.assertAggregates(root);
+        assertEquals(23, root.getSize());
+        assertEquals(7, root.getDescendantCount());
+        assertEquals(4, root.getSystemDescendantCount()); // the two SYSTEM files and old and sys, which hold only those
+
+        DirectoryNode docs = root.getDirectory("docs");
+        FileNode a = docs.getFile("a.txt");
+        assertEquals("txt", a.getExtension());
+        assertEquals(10, a.getSize());
+        assertEquals(midnight(2020, 2, 1), a.getLastModified().getTime());
+        assertEquals(AccessLevel.USER, docs.getAccessLevel());
+        assertEquals(AccessLevel.SYSTEM, root.getDirectory("sys").getAccessLevel());
+        assertEquals(AccessLevel.SYSTEM, docs.getDirectory("old").getAccessLevel());
+        assertEquals(midnight(2021, 12, 31), root.getLastModified().getTime());
+        assertNotNull(root.getFile("top.md"));
+    }
+
+    @Test
+    void rootLineIsOptional() throws IOException {
+        DirectoryNode withRoot = load(MANIFEST);
+        // Without it, a directory on the first line would stand for the root, so a file comes first
+        DirectoryNode without = load(String.join("\n",
+                "top.md##1.1.2018##1##USER",
+                "\\docs",
+                "\ta.txt##1.2.2020##10##USER",
+                "\t\\old",
+                "\t\tb.log##3.4.2019##5##SYSTEM",
+                "\\sys",
+                "\tk.bin##31.12.2021##7##SYSTEM"));
+        assertEquals(withRoot.getContentHash(), without.getContentHash());
+        assertEquals(withRoot.getDescendantCount(), without.getDescendantCount());
+    }
+
+    @Test
+    void toleratesCrlfBlankLinesAndPadding() throws IOException {
+        DirectoryNode root = load("\\root\r\n\r\n\t\\docs  \r\n\t\t a.txt ## 1.2.2020 ## 10 ## USER \r\n\t\t\r\n");
+        FileNode a = root.getDirectory("docs").getFile("a.txt");
+        assertNotNull(a);
+        assertEquals(10, a.getSize());
+        Trees.assertAggregates(root);
+    }
+
+    @Test
+    void inputStreamMatchesReader() throws IOException {
+        String manifest = MANIFEST + "\n\t\\caf\u00e9\n\t\t\u00fcber.txt##2.2.2022##4##USER\n";
+        DirectoryNode fromReader = load(manifest);
+        DirectoryNode fromStream = new DirectoryNode("root", new Date(0), AccessLevel.USER);
+        new FileSystemLoader(fromStream).load(new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(fromReader.getContentHash(), fromStream.getContentHash());
+        assertNotNull(fromStream.getDirectory("caf\u00e9").getFile("\u00fcber.txt"));
+    }
+
+    @Test
+    void reportsLineOfMalformedEntries() {
+        assertError("line 3: indentation skips a level", "\\root", "\t\\a", "\t\t\t\\b");
+        assertError("line 2: entry is not indented below the root directory", "\\root", "x.txt##1.1.2020##1##USER");
+        assertError("line 3: duplicate file x.txt", "\\a", "\tx.txt##1.1.2020##1##USER", "\tx.txt##1.1.2020##2##USER");
+        assertError("line 3: duplicate directory a", "\\root", "\t\\a", "\t\\a");
+        assertError("line 1: invalid date", "x.txt##31.2.2020##1##USER");
+        assertError("line 1: invalid date", "x.txt##0.0.0##1##USER");
+        assertError("line 1: invalid date", "x.txt##0.1.2020##1##USER");
+        assertError("line 1: invalid date", "x.txt##1.0.2020##1##USER");
+        assertError("line 1: invalid size", "x.txt##1.1.2020##-1##USER");
+        assertError("line 1: access level must be USER or SYSTEM", "x.txt##1.1.2020##1##ADMIN");
+        assertError("line 1: expected name##date##size##access", "x.txt##1.1.2020");
+        assertError("line 1: missing file name", " ##1.1.2020##1##USER");
+    }
+
+    @Test
+    void fileClosesItsLevel() {
+        // A deeper line after a file has no directory to belong to
+        assertError("line 3: indentation skips a level", "\\a", "\tx.txt##1.1.2020##1##USER", "\t\ty.txt##1.1.2020##1##USER");
+    }
+
+    private static void assertError(String message, String... lines) {
+        IOException e = assertThrows(IOException.class, () -> load(String.join("\n", lines)));
+        assertTrue(e.getMessage().startsWith(message), e.getMessage());
+    }
+}
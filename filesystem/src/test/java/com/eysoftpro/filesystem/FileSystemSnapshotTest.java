@@ -0,0 +1,160 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileSystemSnapshotTest {
+    @TempDir
+    Path dir;
+
+    private static DirectoryNode sample() throws IOException {
+        DirectoryNode root = new DirectoryNode("root", new Date(0), AccessLevel.USER);
+        StringBuilder manifest = new StringBuilder("\\root\n");
+        for (int d = 0; d < 20; d++) {
+            manifest.append("\t\\d").append(d).append('\n');
+            for (int f = 0; f < 30; f++) {
+                manifest.append("\t\tf").append(f).append(d % 3 == 0 ? ".bin" : ".txt")
+                        .append("##").append(1 + f % 28).append('.').append(1 + d % 12).append(".2020##")
+                        .append(d * 100 + f).append(d % 5 == 0 ? "##SYSTEM" : "##USER").append('\n');
+            }
+            manifest.append("\t\t\\empty\n");
+        }
+        new FileSystemLoader(root).load(new StringReader(manifest.toString()));
+        return root;
+    }
+
+    private static void assertSameTree(DirectoryNode expected, DirectoryNode actual) {
+        assertEquals(expected.getContentHash(), actual.getContentHash());
+        List<TreeNode> a = TreeTraversal.findAll(expected, n -> true);
+        List<TreeNode> b = TreeTraversal.findAll(actual, n -> true);
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++) {
+            TreeNode x = a.get(i);
+            TreeNode y = b.get(i);
+            assertEquals(x.getFullPath(), y.getFullPath());
+            assertEquals(x.getSize(), y.getSize(), x.getFullPath());
+            assertEquals(x.getLastModified(), y.getLastModified(), x.getFullPath());
+            assertEquals(x.getAccessLevel(), y.getAccessLevel(), x.getFullPath());
+            if (x instanceof DirectoryNode) {
+                DirectoryNode dx = (DirectoryNode) x;
+                DirectoryNode dy = (DirectoryNode) y;
+                assertEquals(dx.getDescendantCount(), dy.getDescendantCount(), x.getFullPath());
+                assertEquals(dx.getSystemDescendantCount(), dy.getSystemDescendantCount(), x.getFullPath());
+                assertEquals(dx.getSystemChildCount(), dy.getSystemChildCount(), x.getFullPath());
+                if (x.getParent() != null) { // the root keeps its own values
+                    assertEquals(dx.getOwnAccessLevel(), dy.getOwnAccessLevel(), x.getFullPath());
+                    assertEquals(dx.getOwnLastModified(), dy.getOwnLastModified(), x.getFullPath());
+                }
+            } else {
+                assertEquals(((FileNode) x).getExtension(), ((FileNode) y).getExtension());
+            }
+        }
+    }
+
+    @Test
+    void roundTripKeepsNodesAggregatesAndSequence() throws IOException {
+        DirectoryNode root = sample();
+        Path snapshot = dir.resolve("tree.snap");
+        FileSystemSnapshot.save(root, snapshot, 42);
+        assertFalse(Files.exists(dir.resolve("tree.snap.tmp")));
+
+        DirectoryNode loaded = new DirectoryNode("root", new Date(0), AccessLevel.USER);
+        List<TreeNode> topLevel = new ArrayList<>();
+        assertEquals(42, FileSystemSnapshot.load(snapshot, loaded, topLevel));
+        loaded.recalculateProperties();
+        assertEquals(20, topLevel.size());
+        assertSameTree(root, loaded);
+        Trees.assertAggregates(loaded);
+    }
+
+    @Test
+    void fileSystemRestoresIndexesFromSnapshot() throws Exception {
+        FileSystem fs = new FileSystem();
+        fs.addDirectory("/", "a", "USER");
+        fs.addFile("/a", "x.txt", "txt", 3, "USER", new Date(5000));
+        fs.addFile("/a", "k.sys", "sys", 4, "SYSTEM", new Date(6000));
+        Path snapshot = dir.resolve("fs.snap");
+        fs.saveSnapshot(snapshot.toString());
+
+        FileSystem restored = new FileSystem();
+        restored.loadSnapshot(snapshot.toString());
+        assertSameTree(fs.getRoot(), restored.getRoot());
+        assertEquals(1, restored.searchByName("X.TXT").size());
+        assertEquals(1, restored.searchByExtension("sys").size());
+        assertThrows(AccessViolationException.class, () -> restored.removeFile("/a", "k.sys"));
+    }
+
+    @Test
+    void saveReplacesTheOldSnapshot() throws IOException {
+        Path snapshot = dir.resolve("tree.snap");
+        Files.write(snapshot, new byte[]{1, 2, 3});
+        DirectoryNode root = sample();
+        FileSystemSnapshot.save(root, snapshot, 0);
+        DirectoryNode loaded = new DirectoryNode("root", new Date(0), AccessLevel.USER);
+        FileSystemSnapshot.load(snapshot, loaded, new ArrayList<>());
+        loaded.recalculateProperties();
+        assertSameTree(root, loaded);
+    }
+
+    @Test
+    void rejectsForeignAndDamagedFiles() throws IOException {
+        Path snapshot = dir.resolve("tree.snap");
+        FileSystemSnapshot.save(sample(), snapshot, 0);
+        byte[] valid = Files.readAllBytes(snapshot);
+
+        Path other = dir.resolve("other.snap");
+        Files.write(other, "not a snapshot at all".getBytes());
+        IOException e = assertThrows(IOException.class, () -> load(other));
+        assertTrue(e.getMessage().startsWith("Not a file system snapshot"), e.getMessage());
+
+        byte[] future = valid.clone();
+        ByteBuffer.wrap(future).putInt(4, 99);
+        Files.write(other, future);
+        e = assertThrows(IOException.class, () -> load(other));
+        assertTrue(e.getMessage().startsWith("Unsupported snapshot version 99"), e.getMessage());
+
+        Files.write(other, valid);
+        try (FileChannel channel = FileChannel.open(other, StandardOpenOption.WRITE)) {
+            channel.truncate(valid.length - 100);
+        }
+        assertThrows(IOException.class, () -> load(other));
+    }
+
+    @Test
+    void damagedSnapshotLeavesTheTreeAsItWas() throws Exception {
+        Path snapshot = dir.resolve("tree.snap");
+        FileSystemSnapshot.save(sample(), snapshot, 0);
+        byte[] valid = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(valid, valid.length / 2));
+
+        FileSystem fs = new FileSystem();
+        fs.addDirectory("/", "kept", "USER");
+        fs.addFile("/kept", "k.txt", "txt", 4, "USER", new Date(0));
+        assertThrows(IOException.class, () -> fs.loadSnapshot(snapshot.toString()));
+        assertEquals(List.of("root/kept", "root/kept/k.txt.txt"), Trees.paths(TreeTraversal.findAll(fs.getRoot(), n -> n != fs.getRoot())));
+        assertEquals(4, fs.getRoot().getSize());
+        assertTrue(fs.searchByName("f0.txt").isEmpty());
+        Trees.assertAggregates(fs.getRoot());
+    }
+
+    private static void load(Path snapshot) throws IOException {
+        FileSystemSnapshot.load(snapshot, new DirectoryNode("root", new Date(0), AccessLevel.USER), new ArrayList<>());
+    }
+}
@@ -0,0 +1,204 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileSystemTest {
+    @TempDir
+    Path dir;
+
+    private FileSystem fs;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fs = new FileSystem();
+        fs.addDirectory("/", "home", "USER");
+        fs.addDirectory("/home", "docs", "USER");
+        fs.addFile("/home/docs", "a.txt", "txt", 100, "USER", new Date(1000));
+        fs.addFile("/home/docs", "b.txt", "txt", 50, "USER", new Date(3000));
+        fs.addFile("/home", "c.log", "log", 7, "USER", new Date(2000));
+    }
+
+    @Test
+    void addsPropagateToEveryAncestor() throws Exception {
+        DirectoryNode root = fs.getRoot();
+        DirectoryNode home = fs.findDirectory("/home");
+        assertEquals(157, root.getSize());
+        assertEquals(5, root.getDescendantCount());
+        assertEquals(3000, home.getLastModified().getTime());
+        Trees.assertAggregates(root);
+
+        fs.addDirectory("/home/docs", "deep", "USER");
+        fs.addFile("/home/docs/deep", "new.txt", "txt", 1, "SYSTEM", new Date(9000));
+        assertEquals(158, root.getSize());
+        assertEquals(7, root.getDescendantCount());
+        assertEquals(2, root.getSystemDescendantCount()); // the file and deep, which holds only it
+        assertEquals(9000, root.getLastModified().getTime());
+        assertEquals(AccessLevel.SYSTEM, fs.findDirectory("/home/docs/deep").getAccessLevel());
+        Trees.assertAggregates(root);
+    }
+
+    @Test
+    void removesPropagateAndRestoreTheLatestDate() throws Exception {
+        fs.removeFile("/home/docs", "b.txt");
+        DirectoryNode root = fs.getRoot();
+        assertEquals(107, root.getSize());
+        assertEquals(2000, root.getLastModified().getTime()); // c.log is now the newest
+        assertEquals(1000, fs.findDirectory("/home/docs").getLastModified().getTime());
+        Trees.assertAggregates(root);
+
+        fs.removeFile("/home/docs", "a.txt");
+        fs.removeDirectory("/home", "docs");
+        assertEquals(7, root.getSize());
+        assertEquals(2, root.getDescendantCount());
+        Trees.assertAggregates(root);
+    }
+
+    @Test
+    void systemContentBlocksRemoval() throws Exception {
+        fs.addDirectory("/home/docs", "sys", "USER");
+        fs.addFile("/home/docs/sys", "u.bin", "bin", 1, "USER", new Date(0));
+        fs.addFile("/home/docs/sys", "k.bin", "bin", 1, "SYSTEM", new Date(0));
+        assertThrows(AccessViolationException.class, () -> fs.removeDirectory("/home", "docs"));
+        assertThrows(AccessViolationException.class, () -> fs.removeFile("/home/docs/sys", "k.bin"));
+
+        // Recursive removal keeps the SYSTEM file and the directories leading to it
+        assertEquals(3, fs.removeDirectoryRecursively("/home", "docs"));
+        DirectoryNode docs = fs.findDirectory("/home/docs");
+        assertEquals(2, docs.getDescendantCount());
+        assertEquals(AccessLevel.SYSTEM, docs.getAccessLevel());
+        Trees.assertAggregates(fs.getRoot());
+
+        // A directory that is SYSTEM itself is refused outright, like removeDirectory does
+        AccessViolationException e = assertThrows(AccessViolationException.class,
+                () -> fs.removeDirectoryRecursively("/home", "docs"));
+        assertTrue(e.getMessage().contains("docs"), e.getMessage());
+        assertEquals(2, fs.findDirectory("/home/docs").getDescendantCount());
+    }
+
+    @Test
+    void failedBatchOperationsLeaveNoTrace() throws Exception {
+        fs.addDirectory("/", "locked", "USER");
+        fs.addFile("/locked", "k.bin", "bin", 1, "SYSTEM", new Date(0)); // makes /locked SYSTEM
+        long hash = fs.getRoot().getContentHash();
+        long size = fs.getRoot().getSize();
+
+        FileSystemBatch batch = new FileSystemBatch()
+                .addFile("/home", "c.log", "log", 999, "USER", new Date(0)) // exists
+                .addFile("/locked", "x.txt", "txt", 5, "USER", new Date(0)) // SYSTEM parent
+                .addFile("/missing", "y.txt", "txt", 5, "USER", new Date(0)) // no such path
+                .removeFile("/locked", "k.bin") // SYSTEM file
+                .removeDirectory("/home", "nothing"); // no such directory
+        List<FileSystemException> errors = fs.apply(batch);
+        assertEquals(5, errors.size());
+        assertInstanceOf(FileSystemException.class, errors.get(0));
+        assertInstanceOf(AccessViolationException.class, errors.get(1));
+        assertInstanceOf(InvalidPathException.class, errors.get(2));
+        assertInstanceOf(AccessViolationException.class, errors.get(3));
+        assertInstanceOf(InvalidPathException.class, errors.get(4));
+
+        assertEquals(hash, fs.getRoot().getContentHash());
+        assertEquals(size, fs.getRoot().getSize());
+        assertEquals(7, fs.findDirectory("/home").getFile("c.log").getSize());
+        assertTrue(fs.searchByName("x.txt").isEmpty());
+        Trees.assertAggregates(fs.getRoot());
+    }
+
+    @Test
+    void failuresDoNotStopTheRestOfTheBatch() throws Exception {
+        FileSystemBatch batch = new FileSystemBatch()
+                .addFile("/home/docs", "a.txt", "txt", 1, "USER", new Date(0)) // exists
+                .addFile("/home/docs", "d.txt", "txt", 4, "USER", new Date(5000))
+                .removeFile("/home/docs", "none.txt") // no such file
+                .removeFile("/home", "c.log")
+                .addDirectory("/home", "fresh", "USER", new Date(0));
+        List<FileSystemException> errors = fs.apply(batch);
+        assertInstanceOf(FileSystemException.class, errors.get(0));
+        assertNull(errors.get(1));
+        assertInstanceOf(InvalidPathException.class, errors.get(2));
+        assertNull(errors.get(3));
+        assertNull(errors.get(4));
+
+        assertEquals(154, fs.getRoot().getSize());
+        assertEquals(5000, fs.getRoot().getLastModified().getTime());
+        assertEquals(List.of("root/home/docs/d.txt.txt"), Trees.paths(fs.searchByName("D.TXT")));
+        assertTrue(fs.searchByExtension("log").isEmpty());
+        assertEquals(1, fs.searchByName("fresh").size());
+        Trees.assertAggregates(fs.getRoot());
+    }
+
+    @Test
+    void indexesFollowTheTree() throws Exception {
+        fs.addFile("/home", "A.TXT", "TXT", 1, "USER", new Date(0));
+        assertEquals(List.of("root/home/A.TXT.TXT", "root/home/docs/a.txt.txt"), Trees.paths(fs.searchByName("a.txt")));
+        assertEquals(3, fs.searchByExtension("txt").size());
+        fs.removeDirectoryRecursively("/", "home");
+        assertTrue(fs.searchByName("a.txt").isEmpty());
+        assertTrue(fs.searchByExtension("txt").isEmpty());
+        assertEquals(0, fs.getRoot().getDescendantCount());
+    }
+
+    @Test
+    void searchResultsComeInPathOrder() throws Exception {
+        fs.addDirectory("/", "b", "USER");
+        fs.addDirectory("/", "a", "USER");
+        fs.addFile("/b", "a.txt", "txt", 1, "USER", new Date(0));
+        fs.addFile("/a", "a.txt", "txt", 1, "USER", new Date(0));
+        fs.addFile("/", "a.txt", "txt", 1, "USER", new Date(0));
+        List<String> byName = List.of("root/a.txt.txt", "root/a/a.txt.txt", "root/b/a.txt.txt", "root/home/docs/a.txt.txt");
+        assertEquals(byName, fs.searchByName("a.txt").stream().map(TreeNode::getFullPath).toList());
+        List<String> byExtension = List.of("root/a.txt.txt", "root/a/a.txt.txt", "root/b/a.txt.txt",
+                "root/home/docs/a.txt.txt", "root/home/docs/b.txt.txt");
+        assertEquals(byExtension, fs.searchByExtension("TXT").stream().map(TreeNode::getFullPath).toList());
+    }
+
+    @Test
+    void loadedManifestJoinsTheTree() throws Exception {
+        Path manifest = Trees.manifest(dir, "\\root", "\t\\srv", "\t\tm.txt##1.1.2020##9##USER");
+        fs.loadFromFileSystem(manifest.toString());
+        assertEquals(166, fs.getRoot().getSize());
+        assertEquals(3, fs.searchByExtension("txt").size());
+        Trees.assertAggregates(fs.getRoot());
+    }
+
+    @Test
+    void brokenManifestLeavesConsistentPartialTree() throws Exception {
+        Path manifest = Trees.manifest(dir,
+                "\\root",
+                "\t\\srv",
+                "\t\t\\etc",
+                "\t\t\tpasswd##1.1.2020##9##SYSTEM",
+                "\t\tnotes.txt##2.1.2020##4##USER",
+                "\t\tbroken.txt##2.1.2020##oops##USER",
+                "\t\tnever.txt##3.1.2020##1##USER");
+        IOException e = assertThrows(IOException.class, () -> fs.loadFromFileSystem(manifest.toString()));
+        assertTrue(e.getMessage().contains("line 6"), e.getMessage());
+
+        // What came before the broken line is in the tree, with aggregates and indexes to match
+        DirectoryNode srv = fs.findDirectory("/srv");
+        assertEquals(13, srv.getSize());
+        assertEquals(3, srv.getDescendantCount());
+        assertEquals(2, srv.getSystemDescendantCount());
+        assertEquals(170, fs.getRoot().getSize());
+        assertEquals(1, fs.searchByName("passwd").size());
+        assertTrue(fs.searchByName("never.txt").isEmpty());
+        Trees.assertAggregates(fs.getRoot());
+
+        // The SYSTEM file still protects its directories
+        assertThrows(AccessViolationException.class, () -> fs.removeDirectory("/", "srv"));
+        assertThrows(AccessViolationException.class, () -> fs.removeDirectory("/srv", "etc"));
+        assertEquals(1, fs.removeDirectoryRecursively("/", "srv")); // only notes.txt may go
+    }
+}
@@ -0,0 +1,65 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileSystemWatcherTest {
+    @TempDir
+    Path dir;
+
+    private static void rewrite(Path manifest, String... lines) throws Exception {
+        FileTime before = Files.getLastModifiedTime(manifest);
+        Files.write(manifest, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(manifest, FileTime.fromMillis(before.toMillis() + 5000));
+    }
+
+    @Test
+    void manifestChangesAreApplied() throws Exception {
+        Path manifest = Trees.manifest(dir, "\\root", "\t\\docs", "\t\tr.txt##1.1.2020##10##USER", "\t\\old", "\t\to.txt##1.1.2020##5##USER");
+        FileSystem fs = new FileSystem();
+        fs.loadFromFileSystem(manifest.toString());
+        try (FileSystemWatcher watcher = new FileSystemWatcher(fs)) {
+            watcher.watchManifest(manifest);
+            rewrite(manifest, "\\root", "\t\\docs", "\t\tr.txt##1.1.2020##11##USER", "\t\tt.txt##2.1.2020##7##USER");
+
+            assertEquals(4, watcher.refresh()); // r.txt replaced, t.txt added, /old removed
+            assertEquals(18, fs.getRoot().getSize());
+            assertTrue(fs.searchByName("o.txt").isEmpty());
+            assertTrue(watcher.getLastErrors().isEmpty());
+            assertEquals(0, watcher.refresh());
+            Trees.assertAggregates(fs.getRoot());
+        }
+    }
+
+    @Test
+    void failedOperationsAreReported() throws Exception {
+        Path manifest = Trees.manifest(dir, "\\root", "\t\\docs", "\t\tr.txt##1.1.2020##10##USER", "\t\\old", "\t\to.txt##1.1.2020##5##USER");
+        FileSystem fs = new FileSystem();
+        fs.loadFromFileSystem(manifest.toString());
+        fs.removeFile("/docs", "r.txt"); // removed by hand, so the manifest's change to it cannot apply
+        List<Exception> handled = new ArrayList<>();
+        try (FileSystemWatcher watcher = new FileSystemWatcher(fs)) {
+            watcher.watchManifest(manifest);
+            watcher.setErrorHandler(handled::add);
+            rewrite(manifest, "\\root", "\t\\docs", "\t\tr.txt##1.1.2020##11##USER", "\t\\old", "\t\to.txt##1.1.2020##5##USER");
+
+            assertEquals(1, watcher.refresh()); // the add of the new r.txt still applies
+            assertEquals(1, watcher.getFailures());
+            List<FileSystemException> errors = watcher.getLastErrors();
+            assertEquals(1, errors.size());
+            assertInstanceOf(InvalidPathException.class, errors.get(0));
+            assertEquals(List.of(errors.get(0)), handled);
+        }
+    }
+}
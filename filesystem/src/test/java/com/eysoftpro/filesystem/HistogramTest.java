@@ -0,0 +1,78 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramTest {
+    private static final long[] EDGES = {0, 1, 7, 8, 9, 15, 16, 17, 100, 1023, 1024, 1025, 123_456_789,
+            1L << 40, (1L << 40) + 1, Long.MAX_VALUE / 2, Long.MAX_VALUE - 1, Long.MAX_VALUE};
+
+    // The reported value is at least the true one, at most 1/8 above it, and never above the max
+    private static void assertClose(long expected, long reported, Histogram histogram) {
+        String message = "expected about " + expected + ", got " + reported;
+        assertTrue(reported >= expected, message);
+        assertTrue(reported - expected <= expected / 8, message);
+        assertTrue(reported <= histogram.getMax(), message);
+    }
+
+    @Test
+    void singleValuesAreBoundedByTheirBucket() {
+        for (long value : EDGES) {
+            Histogram histogram = new Histogram();
+            histogram.record(value);
+            assertEquals(value, histogram.getMax());
+            for (double p : new double[]{0, 50, 99.9, 100}) {
+                assertEquals(value, histogram.getPercentile(p), "value " + value + " at " + p); // capped at the max
+            }
+        }
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (long value = 0; value < 8; value++) {
+            histogram.record(value);
+            histogram.record(100);
+        }
+        assertEquals(0, histogram.getPercentile(0));
+        assertEquals(3, histogram.getPercentile(25)); // the 4th of 16
+        assertEquals(7, histogram.getPercentile(50));
+    }
+
+    @Test
+    void percentilesStayWithinAnEighthOfTheTrueValue() {
+        Random random = new Random(42);
+        long[] values = new long[20_000];
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < values.length; i++) {
+            // Spread over many powers of two, including the edges
+            values[i] = i < EDGES.length ? EDGES[i] : (random.nextLong() >>> 1) >>> random.nextInt(63);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+        for (double p : new double[]{0.1, 1, 10, 25, 50, 75, 90, 99, 99.9, 100}) {
+            long rank = Math.max(1, (long) Math.ceil(values.length * p / 100));
+            assertClose(values[(int) rank - 1], histogram.getPercentile(p), histogram);
+        }
+    }
+
+    @Test
+    void negativeValuesCountAsZeroAndResetEmpties() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(50));
+        histogram.record(-5);
+        assertEquals(0, histogram.getPercentile(100));
+        assertEquals(1, histogram.getCount());
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+}
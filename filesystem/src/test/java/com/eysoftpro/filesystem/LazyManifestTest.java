@@ -0,0 +1,113 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LazyManifestTest {
+    @TempDir
+    Path dir;
+
+    private Path manifest;
+
+    // d0..d9 with ten files each; only d3 has a .pdf and only d7 a file named Report.txt.
+    // Sizes are 100 * directory + file, dates are in month 1 + directory.
+    @BeforeEach
+    void setUp() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("\\root");
+        for (int d = 0; d < 10; d++) {
+            lines.add("\t\\d" + d);
+            for (int f = 0; f < 10; f++) {
+                String name = d == 7 && f == 0 ? "Report.txt" : "f" + f + (d == 3 && f == 5 ? ".pdf" : ".txt");
+                lines.add("\t\t" + name + "##" + (f + 1) + "." + (d + 1) + ".2020##" + (100 * d + f) + (f == 9 ? "##SYSTEM" : "##USER"));
+            }
+        }
+        manifest = Trees.manifest(dir, lines.toArray(new String[0]));
+    }
+
+    private FileSystem lazy() throws IOException {
+        FileSystem fs = new FileSystem();
+        fs.loadFromFileSystemLazily(manifest.toString(), 1000);
+        return fs;
+    }
+
+    private FileSystem eager() throws IOException {
+        FileSystem fs = new FileSystem();
+        fs.loadFromFileSystem(manifest.toString());
+        return fs;
+    }
+
+    @Test
+    void aggregatesCountFilesThatAreNotReadIn() throws IOException {
+        FileSystem fs = lazy();
+        assertEquals(0, fs.getLoadedFileCount());
+        FileSystem eager = eager();
+        assertEquals(eager.getRoot().getSize(), fs.getRoot().getSize());
+        assertEquals(eager.getRoot().getDescendantCount(), fs.getRoot().getDescendantCount());
+        assertEquals(eager.getRoot().getSystemDescendantCount(), fs.getRoot().getSystemDescendantCount());
+        assertEquals(eager.getRoot().getContentHash(), fs.getRoot().getContentHash());
+        assertEquals(0, fs.getLoadedFileCount());
+    }
+
+    @Test
+    void nameSearchReadsOnlyTheDirectoryHoldingTheName() throws IOException {
+        FileSystem fs = lazy();
+        assertEquals(List.of("root/d7/Report.txt.txt"), Trees.paths(fs.searchByName("REPORT.TXT")));
+        assertEquals(10, fs.getLoadedFileCount());
+        assertTrue(fs.searchByName("missing.txt").isEmpty());
+        assertEquals(10, fs.getLoadedFileCount());
+        assertEquals(Trees.paths(eager().searchByName("f3.txt")), Trees.paths(fs.searchByName("f3.txt")));
+    }
+
+    @Test
+    void extensionSearchReadsOnlyDirectoriesWithTheExtension() throws IOException {
+        FileSystem fs = lazy();
+        assertEquals(List.of("root/d3/f5.pdf.pdf"), Trees.paths(fs.searchByExtension("PDF")));
+        assertEquals(10, fs.getLoadedFileCount());
+        assertTrue(fs.searchByExtension("doc").isEmpty());
+        assertEquals(10, fs.getLoadedFileCount());
+    }
+
+    @Test
+    void rangeSearchesSkipDirectoriesOutsideTheRange() throws IOException {
+        FileSystem fs = lazy();
+        assertEquals(3, fs.searchBySize(402, 404, 0).size());
+        assertEquals(10, fs.getLoadedFileCount());
+        Date day = Date.from(LocalDate.of(2020, 6, 1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        assertEquals(List.of("root/d5/f0.txt.txt"), Trees.paths(fs.searchByLastModified(day, day, 0)));
+        assertEquals(20, fs.getLoadedFileCount());
+    }
+
+    @Test
+    void brokenManifestLeavesConsistentPartialTree() throws IOException {
+        Path broken = Trees.manifest(dir,
+                "\\root",
+                "\t\\srv",
+                "\t\t\\etc",
+                "\t\t\tpasswd##1.1.2020##9##SYSTEM",
+                "\t\tnotes.txt##2.1.2020##4##USER",
+                "\t\tbroken.txt##2.1.2020##oops##USER");
+        FileSystem fs = new FileSystem();
+        assertThrows(IOException.class, () -> fs.loadFromFileSystemLazily(broken.toString(), 1000));
+
+        DirectoryNode srv = fs.findDirectory("/srv");
+        assertEquals(13, srv.getSize());
+        assertEquals(3, srv.getDescendantCount());
+        assertEquals(2, srv.getSystemDescendantCount());
+        assertThrows(AccessViolationException.class, () -> fs.removeDirectory("/", "srv"));
+        Trees.assertAggregates(fs.getRoot());
+    }
+}
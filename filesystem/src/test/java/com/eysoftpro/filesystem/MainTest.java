@@ -0,0 +1,43 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MainTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void unreadableSnapshotFallsBackToTheManifest() throws Exception {
+        Path manifest = Trees.manifest(dir, "\\root", "\t\\docs", "\t\ta.txt##1.1.2020##10##USER");
+        Path snapshot = dir.resolve("tree.snap");
+        Path journal = dir.resolve("tree.journal");
+        byte[] damaged = "not a snapshot at all".getBytes();
+        Files.write(snapshot, damaged);
+        Files.write(journal, new byte[]{1, 2, 3});
+        Files.setLastModifiedTime(snapshot, FileTime.fromMillis(Files.getLastModifiedTime(manifest).toMillis() + 5000));
+
+        FileSystem fs = new FileSystem();
+        Main.load(fs, manifest.toString(), snapshot.toString(), journal.toString());
+        assertEquals(List.of("root/docs/a.txt.txt"), Trees.paths(fs.searchByExtension("txt")));
+        assertEquals(10, fs.getRoot().getSize());
+        assertFalse(Files.exists(journal));
+        assertArrayEquals(damaged, Files.readAllBytes(dir.resolve("tree.snap.bad")));
+
+        // The snapshot written in its place is what the next start loads
+        FileSystem next = new FileSystem();
+        Main.load(next, manifest.toString(), snapshot.toString(), journal.toString());
+        assertEquals(Trees.paths(TreeTraversal.findAll(fs.getRoot(), n -> true)), Trees.paths(TreeTraversal.findAll(next.getRoot(), n -> true)));
+        assertTrue(Files.getLastModifiedTime(snapshot).compareTo(Files.getLastModifiedTime(manifest)) >= 0);
+    }
+}
@@ -0,0 +1,88 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NameIndexTest {
+    private FileSystem fs;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fs = new FileSystem();
+        fs.addDirectory("/", "docs", "USER");
+        fs.addDirectory("/", "other", "USER");
+        fs.addDirectory("/docs", "reports", "USER");
+        fs.addFile("/docs", "report.txt", "txt", 1, "USER", new Date(0));
+        fs.addFile("/docs", "REPORT-2020.pdf", "pdf", 1, "USER", new Date(0));
+        fs.addFile("/docs", "reporting.md", "md", 1, "USER", new Date(0));
+        fs.addFile("/docs", "summary.txt", "txt", 1, "USER", new Date(0));
+        fs.addFile("/docs", "ab.c", "c", 1, "USER", new Date(0));
+        fs.addFile("/other", "report.txt", "txt", 1, "USER", new Date(0));
+    }
+
+    @Test
+    void prefixFoldsCaseAndHonoursTheLimit() {
+        List<String> all = List.of("root/docs/REPORT-2020.pdf.pdf", "root/docs/report.txt.txt", "root/docs/reporting.md.md",
+                "root/docs/reports", "root/other/report.txt.txt");
+        assertEquals(all, Trees.paths(fs.searchByPrefix("rep", 0)));
+        assertEquals(all, Trees.paths(fs.searchByPrefix("REP", 0)));
+        assertEquals(2, fs.searchByPrefix("rep", 2).size());
+        assertEquals(List.of("root/docs/reports"), Trees.paths(fs.searchByPrefix("reports", 0)));
+        assertTrue(fs.searchByPrefix("zzz", 0).isEmpty());
+    }
+
+    @Test
+    void containingUsesTrigramsAndFallsBackForShortText() {
+        assertEquals(List.of("root/docs/REPORT-2020.pdf.pdf", "root/docs/report.txt.txt", "root/docs/reporting.md.md",
+                "root/docs/reports", "root/other/report.txt.txt"), Trees.paths(fs.searchContaining("PORT", 0)));
+        assertEquals(3, fs.searchContaining("port", 3).size());
+        // Shorter than a trigram, so every name is scanned
+        assertEquals(List.of("root/docs/summary.txt.txt"), Trees.paths(fs.searchContaining("MM", 0)));
+        assertEquals(List.of("root/docs/ab.c.c"), Trees.paths(fs.searchContaining("b", 0)));
+        assertTrue(fs.searchContaining("portx", 0).isEmpty());
+    }
+
+    @Test
+    void globWildcards() {
+        assertEquals(List.of("root/docs/report.txt.txt", "root/docs/summary.txt.txt", "root/other/report.txt.txt"),
+                Trees.paths(fs.searchByGlob("*.TXT", 0)));
+        assertEquals(List.of("root/docs/REPORT-2020.pdf.pdf"), Trees.paths(fs.searchByGlob("report?2020.*", 0)));
+        assertEquals(List.of("root/docs/ab.c.c"), Trees.paths(fs.searchByGlob("?b.c", 0)));
+        assertEquals(List.of("root/docs/reports"), Trees.paths(fs.searchByGlob("Report?", 0)));
+        assertEquals(10, fs.searchByGlob("*", 0).size()); // every node, the root included
+        assertEquals(1, fs.searchByGlob("*", 1).size());
+        assertTrue(fs.searchByGlob("?", 0).isEmpty());
+    }
+
+    @Test
+    void removedNamesLeaveTheIndexes() throws Exception {
+        fs.removeFile("/docs", "report.txt");
+        assertEquals(List.of("root/other/report.txt.txt"), Trees.paths(fs.searchContaining("port.t", 0)));
+        fs.removeFile("/other", "report.txt");
+        assertTrue(fs.searchContaining("port.t", 0).isEmpty());
+        assertEquals(List.of("root/docs/summary.txt.txt"), Trees.paths(fs.searchByGlob("*.txt", 0)));
+        fs.removeDirectory("/docs", "reports");
+        assertEquals(List.of("root/docs/REPORT-2020.pdf.pdf", "root/docs/reporting.md.md"), Trees.paths(fs.searchByPrefix("rep", 0)));
+    }
+
+    @Test
+    void trigramPostingsFollowAddsAndRemoves() {
+        TrigramIndex trigrams = new TrigramIndex();
+        trigrams.add("abcd");
+        trigrams.add("bcde");
+        assertEquals(Set.of("abcd", "bcde"), trigrams.candidates(List.of("bcd")));
+        assertEquals(Set.of("abcd"), trigrams.candidates(List.of("bcd", "abc")));
+        assertNull(trigrams.candidates(List.of("bc", "d"))); // no literal is three characters long
+        trigrams.remove("abcd");
+        assertEquals(Set.of("bcde"), trigrams.candidates(List.of("bcd")));
+        assertTrue(trigrams.candidates(List.of("abc")).isEmpty());
+    }
+}
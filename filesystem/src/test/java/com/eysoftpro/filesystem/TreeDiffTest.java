@@ -0,0 +1,94 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TreeDiffTest {
+    private static FileSystem tree() throws FileSystemException {
+        FileSystem fs = new FileSystem();
+        for (String d : new String[]{"a", "b", "c"}) {
+            fs.addDirectory("/", d, "USER");
+            fs.addDirectory("/" + d, "sub", "USER");
+            for (int i = 0; i < 5; i++) {
+                fs.addFile("/" + d, "f" + i + ".txt", "txt", i, "USER", new Date(i * 1000L));
+                fs.addFile("/" + d + "/sub", "g" + i + ".txt", "txt", i, "USER", new Date(i * 1000L));
+            }
+        }
+        return fs;
+    }
+
+    private static List<String> changes(Iterator<TreeDiff.Change> diff) {
+        List<String> changes = new ArrayList<>();
+        diff.forEachRemaining(change -> changes.add(change.toString()));
+        Collections.sort(changes);
+        return changes;
+    }
+
+    @Test
+    void equalTreesHaveNoChanges() throws FileSystemException {
+        assertFalse(tree().diff(tree()).hasNext());
+    }
+
+    @Test
+    void reportsAddedRemovedAndChangedNodes() throws FileSystemException {
+        FileSystem before = tree();
+        FileSystem after = tree();
+        after.removeFile("/a", "f1.txt");
+        after.addFile("/a", "f1.txt", "txt", 99, "USER", new Date(1000)); // new size
+        after.addFile("/b/sub", "new.txt", "txt", 1, "USER", new Date(0));
+        after.removeDirectoryRecursively("/c", "sub");
+        after.addDirectory("/", "d", "USER");
+
+        assertEquals(List.of(
+                "ADDED root/b/sub/new.txt.txt",
+                "ADDED root/d",
+                "CHANGED root/a/f1.txt.txt",
+                "REMOVED root/c/sub"), changes(before.diff(after)));
+        assertEquals(List.of(
+                "ADDED root/c/sub",
+                "CHANGED root/a/f1.txt.txt",
+                "REMOVED root/b/sub/new.txt.txt",
+                "REMOVED root/d"), changes(after.diff(before)));
+    }
+
+    @Test
+    void changeCarriesBothSides() throws FileSystemException {
+        FileSystem before = tree();
+        FileSystem after = tree();
+        after.removeFile("/a/sub", "g2.txt");
+        after.addFile("/a/sub", "g2.txt", "txt", 2, "USER", new Date(7000)); // new date
+        Iterator<TreeDiff.Change> diff = before.diff(after);
+        TreeDiff.Change change = diff.next();
+        assertFalse(diff.hasNext());
+        assertEquals(TreeDiff.Kind.CHANGED, change.getKind());
+        assertEquals(2000, change.getBefore().getLastModified().getTime());
+        assertEquals(7000, change.getAfter().getLastModified().getTime());
+    }
+
+    @Test
+    void fileAndDirectoryOfTheSameNameAreDifferentNodes() throws FileSystemException {
+        FileSystem before = tree();
+        FileSystem after = tree();
+        after.addDirectory("/a", "f0.txt", "USER");
+        assertEquals(List.of("ADDED root/a/f0.txt"), changes(before.diff(after)));
+    }
+
+    @Test
+    void undoneChangesCancelOut() throws FileSystemException {
+        FileSystem before = tree();
+        FileSystem after = tree();
+        after.addDirectory("/b", "tmp", "USER");
+        after.addFile("/b/tmp", "x.txt", "txt", 1, "USER", new Date(0));
+        after.removeDirectoryRecursively("/b", "tmp");
+        assertEquals(before.getRoot().getContentHash(), after.getRoot().getContentHash());
+        assertFalse(before.diff(after).hasNext());
+    }
+}
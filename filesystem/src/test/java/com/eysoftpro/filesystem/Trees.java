@@ -0,0 +1,71 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+// Shared by the tests: manifests written to disk and aggregates recounted from scratch
+final class Trees {
+    private Trees() {
+    }
+
+    static Path manifest(Path dir, String... lines) throws IOException {
+        Path file = Files.createTempFile(dir, "manifest", ".txt");
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    // Recounts every directory below dir from its children and compares with what it keeps.
+    // Returns {nodes, SYSTEM nodes} in dir's subtree, dir itself not included.
+    static long[] assertAggregates(DirectoryNode dir) {
+        long size = 0;
+        long nodes = 0;
+        long systemNodes = 0;
+        int systemChildren = 0;
+        long hash = 0;
+        long latest = Long.MIN_VALUE;
+        for (TreeNode child : dir.children()) {
+            assertEquals(dir, child.getParent(), child.getFullPath());
+            size += child.getSize();
+            nodes++;
+            if (child.getAccessLevel() == AccessLevel.SYSTEM) {
+                systemChildren++;
+                systemNodes++;
+            }
+            if (child instanceof DirectoryNode) {
+                long[] below = assertAggregates((DirectoryNode) child);
+                nodes += below[0];
+                systemNodes += below[1];
+            }
+            hash += ContentHash.of(child);
+            latest = Math.max(latest, child.getLastModified().getTime());
+        }
+        String path = dir.getFullPath();
+        assertEquals(size, dir.getSize(), "size of " + path);
+        assertEquals(nodes, dir.getDescendantCount(), "descendants of " + path);
+        assertEquals(systemNodes, dir.getSystemDescendantCount(), "SYSTEM descendants of " + path);
+        assertEquals(systemChildren, dir.getSystemChildCount(), "SYSTEM children of " + path);
+        assertEquals(hash, dir.getContentHash(), "content hash of " + path);
+        if (dir.getChildCount() > 0) {
+            assertEquals(latest, dir.getLastModified().getTime(), "date of " + path);
+            assertEquals(systemChildren == dir.getChildCount() ? AccessLevel.SYSTEM : AccessLevel.USER, dir.getAccessLevel(), "access of " + path);
+        }
+        return new long[]{nodes, systemNodes};
+    }
+
+    static List<String> paths(Collection<? extends TreeNode> nodes) {
+        List<String> paths = new ArrayList<>();
+        for (TreeNode node : nodes) {
+            paths.add(node.getFullPath());
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+}
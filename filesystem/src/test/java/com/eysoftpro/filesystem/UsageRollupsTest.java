@@ -0,0 +1,74 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+
+class UsageRollupsTest {
+    // The rollups kept up to date on every change against a report counted from scratch
+    private static UsageReport assertMatchesRecount(FileSystem fs) throws Exception {
+        UsageReport kept = fs.getUsage();
+        UsageReport counted = fs.computeUsage("/");
+        assertEquals(counted.byExtension().toString(), kept.byExtension().toString());
+        assertEquals(counted.byAccessLevel().toString(), kept.byAccessLevel().toString());
+        assertEquals(counted.byDepth().toString(), kept.byDepth().toString());
+        assertEquals(counted.byTopLevel().toString(), kept.byTopLevel().toString());
+        assertEquals(counted.getTotal().toString(), kept.getTotal().toString());
+        return kept;
+    }
+
+    @Test
+    void rollupsFollowAddsAndRemoves() throws Exception {
+        FileSystem fs = new FileSystem();
+        assertMatchesRecount(fs);
+
+        fs.addDirectory("/", "home", "USER");
+        fs.addDirectory("/home", "docs", "USER");
+        fs.addFile("/home/docs", "a.txt", "txt", 100, "USER", new Date(0));
+        fs.addFile("/home/docs", "B.TXT", "TXT", 50, "USER", new Date(0));
+        fs.addFile("/home", "c.log", "log", 7, "USER", new Date(0));
+        fs.addDirectory("/", "srv", "USER");
+        fs.addFile("/srv", "k.bin", "bin", 3, "SYSTEM", new Date(0));
+        UsageReport report = assertMatchesRecount(fs);
+        assertEquals(2, report.byExtension().get("txt").getCount()); // folded like the extension index
+        assertEquals(150, report.byExtension().get("txt").getBytes());
+        assertEquals(3, report.byAccessLevel().get(AccessLevel.SYSTEM).getBytes());
+        assertEquals(4, report.byDepth().size());
+
+        fs.removeFile("/home", "c.log");
+        report = assertMatchesRecount(fs);
+        assertFalse(report.byExtension().containsKey("log")); // dropped to zero
+
+        fs.removeFile("/home/docs", "a.txt");
+        assertEquals(1, assertMatchesRecount(fs).byExtension().get("txt").getCount());
+    }
+
+    @Test
+    void recursiveRemovalDropsEmptiedGroups() throws Exception {
+        FileSystem fs = new FileSystem();
+        fs.addDirectory("/", "a", "USER");
+        fs.addDirectory("/a", "b", "USER");
+        fs.addDirectory("/a/b", "c", "USER");
+        fs.addFile("/a/b/c", "deep.md", "md", 5, "USER", new Date(0));
+        fs.addFile("/a/b", "keep.bin", "bin", 2, "SYSTEM", new Date(0));
+        fs.addFile("/a", "x.md", "md", 1, "USER", new Date(0));
+        fs.addDirectory("/", "other", "USER");
+        fs.addFile("/other", "o.txt", "txt", 4, "USER", new Date(0));
+        assertEquals(5, assertMatchesRecount(fs).byDepth().size());
+
+        // Leaves /a/b/keep.bin and the directories above it
+        assertEquals(3, fs.removeDirectoryRecursively("/", "a"));
+        UsageReport report = assertMatchesRecount(fs);
+        assertFalse(report.byExtension().containsKey("md"));
+        assertEquals(4, report.byDepth().size()); // nothing is left at depth 4
+
+        fs.removeDirectoryRecursively("/", "other");
+        report = assertMatchesRecount(fs);
+        assertFalse(report.byExtension().containsKey("txt"));
+        assertFalse(report.byAccessLevel().containsKey(AccessLevel.USER));
+        assertEquals(1, report.byTopLevel().size());
+    }
+}
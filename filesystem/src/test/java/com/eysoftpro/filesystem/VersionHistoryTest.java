@@ -0,0 +1,130 @@
+package com.eysoftpro.filesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class VersionHistoryTest {
+    @TempDir
+    Path dir;
+
+    private FileSystem fs;
+
+    @BeforeEach
+    void setUp() throws FileSystemException {
+        fs = new FileSystem();
+        for (String d : new String[]{"a", "b"}) {
+            fs.addDirectory("/", d, "USER");
+            fs.addDirectory("/" + d, "deep", "USER");
+            fs.addFile("/" + d + "/deep", "x.txt", "txt", 10, "USER", new Date(1000));
+        }
+        fs.enableVersioning(100, 60_000);
+    }
+
+    private static PersistentNode child(PersistentNode dir, String name) {
+        return dir.child(name, true);
+    }
+
+    @Test
+    void versionsShareUntouchedSubtrees() throws FileSystemException {
+        FileSystemVersion before = fs.getVersion();
+        fs.addFile("/a/deep", "y.txt", "txt", 5, "USER", new Date(2000));
+        FileSystemVersion after = fs.getVersion();
+
+        assertEquals(before.getNumber() + 1, after.getNumber());
+        assertSame(child(before.root, "b"), child(after.root, "b"));
+        assertNotSame(child(before.root, "a"), child(after.root, "a"));
+        PersistentNode oldDeep = child(child(before.root, "a"), "deep");
+        PersistentNode newDeep = child(child(after.root, "a"), "deep");
+        assertSame(oldDeep.child("x.txt", false), newDeep.child("x.txt", false));
+        assertEquals(1, oldDeep.children.length);
+        assertEquals(2, newDeep.children.length);
+    }
+
+    @Test
+    void versionsKeepTheirContentAndAggregates() throws FileSystemException {
+        FileSystemVersion before = fs.getVersion();
+        fs.removeDirectoryRecursively("/", "b");
+        fs.addFile("/a", "z.log", "log", 7, "SYSTEM", new Date(9000));
+
+        assertEquals(20, before.getRoot().getSize());
+        assertNotNull(before.findDirectory("/b/deep"));
+        assertEquals(2, before.searchByName("X.txt").size());
+
+        FileSystemVersion now = fs.getVersion();
+        assertNull(now.findDirectory("/b"));
+        assertEquals(17, now.getRoot().getSize());
+        assertEquals(fs.getRoot().getContentHash(), now.getRoot().getContentHash());
+        assertEquals(fs.getNodeCount(), now.getNodeCount());
+        assertEquals(1, now.getRoot().getSystemDescendantCount());
+        Trees.assertAggregates(now.getRoot());
+    }
+
+    @Test
+    void retentionDropsTheOldestVersions() throws FileSystemException {
+        fs.enableVersioning(3, 60_000);
+        for (int i = 0; i < 5; i++) {
+            fs.addFile("/a", "n" + i + ".txt", "txt", i, "USER", new Date(0));
+        }
+        List<FileSystemVersion> versions = fs.getVersions();
+        assertEquals(3, versions.size());
+        long newest = fs.getVersion().getNumber();
+        assertEquals(newest - 2, versions.get(0).getNumber());
+        assertNull(fs.getVersion(newest - 3));
+        assertNotNull(fs.getVersion(newest - 1));
+    }
+
+    @Test
+    void versionsAreReadOnly() {
+        DirectoryNode root = fs.getVersion().getRoot();
+        assertThrows(UnsupportedOperationException.class,
+                () -> root.addChild(new FileNode("f.txt", "txt", new Date(0), 1, AccessLevel.USER)));
+        assertEquals(1, fs.getVersion().findDirectory("/a/deep").getChildCount());
+    }
+
+    @Test
+    void lazyManifestFilesAreInEveryVersion() throws IOException {
+        Path manifest = Trees.manifest(dir, "\\root", "\t\\srv", "\t\tm.txt##1.1.2020##9##USER", "\t\tn.txt##1.1.2020##4##USER");
+        FileSystem lazy = new FileSystem();
+        lazy.loadFromFileSystemLazily(manifest.toString(), 1000);
+        lazy.enableVersioning(100, 60_000);
+
+        FileSystemVersion version = lazy.getVersion();
+        assertEquals(lazy.getNodeCount(), version.getNodeCount());
+        assertEquals(1, version.searchByName("m.txt").size());
+        assertEquals(1, lazy.searchByName("n.txt").size());
+        assertSame(version, lazy.getVersion()); // reading files in is not a change
+    }
+
+    @Test
+    void loadingAndUnloadingKeepTheFiles() throws FileSystemException {
+        VersionHistory history = new VersionHistory(10, 60_000);
+        history.nodeAdded(fs.getRoot());
+        FileSystemVersion first = history.current();
+        DirectoryNode deep = fs.findDirectory("/a/deep");
+        FileNode x = deep.getFile("x.txt");
+
+        history.nodeUnloaded(deep, x);
+        history.nodeLoaded(x);
+        assertSame(first, history.current());
+        assertEquals(2, first.searchByName("x.txt").size()); // in /a/deep and /b/deep
+
+        // A file the history has not seen yet is added
+        fs.addFile("/a/deep", "y.txt", "txt", 5, "USER", new Date(0));
+        history.nodeLoaded(fs.findDirectory("/a/deep").getFile("y.txt"));
+        assertEquals(first.getNumber() + 1, history.current().getNumber());
+        assertEquals(1, history.current().searchByName("y.txt").size());
+    }
+}